@@ -48,9 +48,6 @@ public class DecompileCommand extends Command {
 
 		ProgressListener progress = new ConsoleProgressListener();
 
-		EnigmaProject.JarExport jar = project.exportRemappedJar(progress);
-		EnigmaProject.SourceExport source = jar.decompile(project, progress, decompilerService, DecompileErrorStrategy.TRACE_AS_SOURCE);
-
-		source.write(fileJarOut, progress);
+		project.decompileTo(fileJarOut, progress, decompilerService, DecompileErrorStrategy.TRACE_AS_SOURCE);
 	}
 }
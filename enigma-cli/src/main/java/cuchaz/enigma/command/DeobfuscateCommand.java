@@ -32,7 +32,6 @@ public class DeobfuscateCommand extends Command {
 
 		ProgressListener progress = new ConsoleProgressListener();
 
-		EnigmaProject.JarExport jar = project.exportRemappedJar(progress);
-		jar.write(fileJarOut, progress);
+		project.exportRemappedJar(fileJarOut, EnigmaProject.DEFAULT_EXPORT_COMPRESSION_LEVEL, progress);
 	}
 }
@@ -23,7 +23,7 @@ import cuchaz.enigma.ProgressListener;
 import cuchaz.enigma.translation.mapping.EntryRemapper;
 import cuchaz.enigma.translation.mapping.serde.MappingFormat;
 import cuchaz.enigma.translation.mapping.serde.MappingParseException;
-import cuchaz.enigma.utils.Utils;
+import cuchaz.enigma.utils.JarChecksums;
 
 public class DedicatedEnigmaServer extends EnigmaServer {
 	private final EnigmaProfile profile;
@@ -32,8 +32,8 @@ public class DedicatedEnigmaServer extends EnigmaServer {
 	private final PrintWriter log;
 	private BlockingQueue<Runnable> tasks = new LinkedBlockingDeque<>();
 
-	public DedicatedEnigmaServer(byte[] jarChecksum, char[] password, EnigmaProfile profile, MappingFormat mappingFormat, Path mappingsFile, PrintWriter log, EntryRemapper mappings, int port) {
-		super(jarChecksum, password, mappings, port);
+	public DedicatedEnigmaServer(byte[] jarChecksum, JarChecksums.Mode jarChecksumMode, char[] password, EnigmaProfile profile, MappingFormat mappingFormat, Path mappingsFile, PrintWriter log, EntryRemapper mappings, int port) {
+		super(jarChecksum, jarChecksumMode, password, mappings, port);
 		this.profile = profile;
 		this.mappingFormat = mappingFormat;
 		this.mappingsFile = mappingsFile;
@@ -86,12 +86,13 @@ public class DedicatedEnigmaServer extends EnigmaServer {
 		DedicatedEnigmaServer server;
 
 		try {
-			byte[] checksum = Utils.zipSha1(jars.toArray(new Path[0]));
-
 			EnigmaProfile profile = EnigmaProfile.read(profileFile);
 			Enigma enigma = Enigma.builder().setProfile(profile).build();
 			System.out.println("Indexing Jar...");
 			EnigmaProject project = enigma.openJars(jars, parsedArgs.valuesOf(librariesOpt), ProgressListener.none());
+			// the clients compare this with the checksum of the jars they opened, which must be computed the same way
+			byte[] checksum = project.getJarChecksum();
+			JarChecksums.Mode checksumMode = project.getJarChecksumMode();
 
 			MappingFormat mappingFormat = MappingFormat.ENIGMA_DIRECTORY;
 			EntryRemapper mappings;
@@ -112,7 +113,7 @@ public class DedicatedEnigmaServer extends EnigmaServer {
 
 			PrintWriter log = new PrintWriter(Files.newBufferedWriter(logFile));
 
-			server = new DedicatedEnigmaServer(checksum, password, profile, mappingFormat, mappingsFile, log, mappings, port);
+			server = new DedicatedEnigmaServer(checksum, checksumMode, password, profile, mappingFormat, mappingsFile, log, mappings, port);
 			server.start();
 			System.out.println("Server started");
 		} catch (IOException | MappingParseException e) {
@@ -28,11 +28,12 @@ import cuchaz.enigma.translation.mapping.EntryChange;
 import cuchaz.enigma.translation.mapping.EntryMapping;
 import cuchaz.enigma.translation.mapping.EntryRemapper;
 import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.utils.JarChecksums;
 
 public abstract class EnigmaServer {
 	// https://discordapp.com/channels/507304429255393322/566418023372816394/700292322918793347
 	public static final int DEFAULT_PORT = 34712;
-	public static final int PROTOCOL_VERSION = 1;
+	public static final int PROTOCOL_VERSION = 2;
 	public static final int CHECKSUM_SIZE = 20;
 	public static final int MAX_PASSWORD_LENGTH = 255; // length is written as a byte in the login packet
 
@@ -43,6 +44,7 @@ public abstract class EnigmaServer {
 	private Set<Socket> unapprovedClients = new HashSet<>();
 
 	private final byte[] jarChecksum;
+	private final JarChecksums.Mode jarChecksumMode;
 	private final char[] password;
 
 	public static final int DUMMY_SYNC_ID = 0;
@@ -54,8 +56,9 @@ public abstract class EnigmaServer {
 
 	private static int nextIoId = 0;
 
-	public EnigmaServer(byte[] jarChecksum, char[] password, EntryRemapper mappings, int port) {
+	public EnigmaServer(byte[] jarChecksum, JarChecksums.Mode jarChecksumMode, char[] password, EntryRemapper mappings, int port) {
 		this.jarChecksum = jarChecksum;
+		this.jarChecksumMode = jarChecksumMode;
 		this.password = password;
 		this.mappings = mappings;
 		this.port = port;
@@ -293,6 +296,10 @@ public abstract class EnigmaServer {
 		return jarChecksum;
 	}
 
+	public JarChecksums.Mode getJarChecksumMode() {
+		return jarChecksumMode;
+	}
+
 	public char[] getPassword() {
 		return password;
 	}
@@ -3,10 +3,11 @@ package cuchaz.enigma.network;
 import javax.swing.SwingUtilities;
 
 import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.utils.JarChecksums;
 
 public class IntegratedEnigmaServer extends EnigmaServer {
-	public IntegratedEnigmaServer(byte[] jarChecksum, char[] password, EntryRemapper mappings, int port) {
-		super(jarChecksum, password, mappings, port);
+	public IntegratedEnigmaServer(byte[] jarChecksum, JarChecksums.Mode jarChecksumMode, char[] password, EntryRemapper mappings, int port) {
+		super(jarChecksum, jarChecksumMode, password, mappings, port);
 	}
 
 	@Override
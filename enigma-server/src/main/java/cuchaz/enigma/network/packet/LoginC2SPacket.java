@@ -5,20 +5,26 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Arrays;
 
+import org.jetbrains.annotations.Nullable;
+
 import cuchaz.enigma.network.EnigmaServer;
 import cuchaz.enigma.network.Message;
 import cuchaz.enigma.network.ServerPacketHandler;
+import cuchaz.enigma.utils.JarChecksums;
 
 public class LoginC2SPacket implements Packet<ServerPacketHandler> {
 	private byte[] jarChecksum;
+	@Nullable
+	private JarChecksums.Mode jarChecksumMode;
 	private char[] password;
 	private String username;
 
 	LoginC2SPacket() {
 	}
 
-	public LoginC2SPacket(byte[] jarChecksum, char[] password, String username) {
+	public LoginC2SPacket(byte[] jarChecksum, JarChecksums.Mode jarChecksumMode, char[] password, String username) {
 		this.jarChecksum = jarChecksum;
+		this.jarChecksumMode = jarChecksumMode;
 		this.password = password;
 		this.username = username;
 	}
@@ -31,6 +37,9 @@ public class LoginC2SPacket implements Packet<ServerPacketHandler> {
 
 		this.jarChecksum = new byte[EnigmaServer.CHECKSUM_SIZE];
 		input.readFully(jarChecksum);
+		String jarChecksumMode = PacketHelper.readString(input);
+		// a mode unknown to this server can't match its own
+		this.jarChecksumMode = Arrays.stream(JarChecksums.Mode.values()).filter(mode -> mode.name().equals(jarChecksumMode)).findFirst().orElse(null);
 		this.password = new char[input.readUnsignedByte()];
 
 		for (int i = 0; i < password.length; i++) {
@@ -44,6 +53,7 @@ public class LoginC2SPacket implements Packet<ServerPacketHandler> {
 	public void write(DataOutput output) throws IOException {
 		output.writeShort(EnigmaServer.PROTOCOL_VERSION);
 		output.write(jarChecksum);
+		PacketHelper.writeString(output, jarChecksumMode.name());
 		output.writeByte(password.length);
 
 		for (char c : password) {
@@ -69,6 +79,11 @@ public class LoginC2SPacket implements Packet<ServerPacketHandler> {
 			return;
 		}
 
+		if (jarChecksumMode != handler.getServer().getJarChecksumMode()) {
+			handler.getServer().kick(handler.getClient(), "disconnect.wrong_jar_checksum_mode");
+			return;
+		}
+
 		if (!Arrays.equals(jarChecksum, handler.getServer().getJarChecksum())) {
 			handler.getServer().kick(handler.getClient(), "disconnect.wrong_jar");
 			return;
@@ -113,6 +113,9 @@ public class GuiController implements ClientPacketHandler, GuiView, DataInvalida
 	private ClassHandleProvider chp;
 
 	private ClassHandle tokenHandle;
+	// the open classes that show a renamed entry, while the rename invalidates the mappings
+	@Nullable
+	private Set<ClassEntry> renamedEntryClasses;
 
 	private EnigmaClient client;
 	private EnigmaServer server;
@@ -317,16 +320,7 @@ public class GuiController implements ClientPacketHandler, GuiView, DataInvalida
 			return CompletableFuture.completedFuture(null);
 		}
 
-		return ProgressDialog.runOffThread(this.gui.getFrame(), progress -> {
-			EnigmaProject.JarExport jar = project.exportRemappedJar(progress);
-			jar.decompileStream(project, progress, chp.getDecompilerService(), EnigmaProject.DecompileErrorStrategy.TRACE_AS_SOURCE).forEach(source -> {
-				try {
-					source.writeTo(source.resolvePath(path));
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-			});
-		});
+		return ProgressDialog.runOffThread(this.gui.getFrame(), progress -> project.decompileTo(path, progress, chp.getDecompilerService(), EnigmaProject.DecompileErrorStrategy.TRACE_AS_SOURCE));
 	}
 
 	public CompletableFuture<Void> exportJar(final Path path) {
@@ -334,10 +328,7 @@ public class GuiController implements ClientPacketHandler, GuiView, DataInvalida
 			return CompletableFuture.completedFuture(null);
 		}
 
-		return ProgressDialog.runOffThread(this.gui.getFrame(), progress -> {
-			EnigmaProject.JarExport jar = project.exportRemappedJar(progress);
-			jar.write(path, progress);
-		});
+		return ProgressDialog.runOffThread(this.gui.getFrame(), progress -> project.exportRemappedJar(path, EnigmaProject.DEFAULT_EXPORT_COMPRESSION_LEVEL, progress));
 	}
 
 	public void setTokenHandle(ClassHandle handle) {
@@ -609,7 +600,15 @@ public class GuiController implements ClientPacketHandler, GuiView, DataInvalida
 			project.invalidateData(target.getTopLevelClass().getFullName(), DataInvalidationEvent.InvalidationType.JAVADOC);
 			// invalidateJavadoc implies invalidateMapped, so no need to check for that too
 		} else if (!Objects.equals(prev.targetName(), mapping.targetName())) {
-			project.invalidateData(DataInvalidationEvent.InvalidationType.MAPPINGS);
+			// other listeners still see every class invalidated, but only the open classes that show the renamed
+			// entry are remapped
+			renamedEntryClasses = chp.getClassesReferencing(target);
+
+			try {
+				project.invalidateData(DataInvalidationEvent.InvalidationType.MAPPINGS);
+			} finally {
+				renamedEntryClasses = null;
+			}
 		}
 
 		gui.showStructure(gui.getActiveEditor());
@@ -654,16 +653,16 @@ public class GuiController implements ClientPacketHandler, GuiView, DataInvalida
 	public void createClient(String username, String ip, int port, char[] password) throws IOException {
 		client = new EnigmaClient(this, ip, port);
 		client.connect();
-		client.sendPacket(new LoginC2SPacket(project.getJarChecksum(), password, username));
+		client.sendPacket(new LoginC2SPacket(project.getJarChecksum(), project.getJarChecksumMode(), password, username));
 		gui.setConnectionState(ConnectionState.CONNECTED);
 	}
 
 	public void createServer(int port, char[] password) throws IOException {
-		server = new IntegratedEnigmaServer(project.getJarChecksum(), password, EntryRemapper.mapped(project.getJarIndex(), new HashEntryTree<>(project.getMapper().getObfToDeobf())), port);
+		server = new IntegratedEnigmaServer(project.getJarChecksum(), project.getJarChecksumMode(), password, EntryRemapper.mapped(project.getJarIndex(), new HashEntryTree<>(project.getMapper().getObfToDeobf())), port);
 		server.start();
 		client = new EnigmaClient(this, "127.0.0.1", port);
 		client.connect();
-		client.sendPacket(new LoginC2SPacket(project.getJarChecksum(), password, NetConfig.getUsername()));
+		client.sendPacket(new LoginC2SPacket(project.getJarChecksum(), project.getJarChecksumMode(), password, NetConfig.getUsername()));
 		gui.setConnectionState(ConnectionState.HOSTING);
 	}
 
@@ -715,7 +714,13 @@ public class GuiController implements ClientPacketHandler, GuiView, DataInvalida
 
 		if (event.getClasses() == null) {
 			switch (event.getType()) {
-			case MAPPINGS -> chp.invalidateMapped();
+			case MAPPINGS -> {
+				if (renamedEntryClasses != null) {
+					renamedEntryClasses.forEach(chp::invalidateMapped);
+				} else {
+					chp.invalidateMapped();
+				}
+			}
 			case JAVADOC -> chp.invalidateJavadoc();
 			case DECOMPILE -> chp.invalidate();
 			}
@@ -26,9 +26,12 @@ import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Opcodes;
 
+import cuchaz.enigma.analysis.index.ClassIndexRecords;
 import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.analysis.index.JarIndexCache;
 import cuchaz.enigma.api.EnigmaPlugin;
 import cuchaz.enigma.api.EnigmaPluginContext;
 import cuchaz.enigma.api.Ordering;
@@ -42,7 +45,9 @@ import cuchaz.enigma.classprovider.ClassProvider;
 import cuchaz.enigma.classprovider.ClasspathClassProvider;
 import cuchaz.enigma.classprovider.CombiningClassProvider;
 import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.source.SourceCache;
 import cuchaz.enigma.utils.I18n;
+import cuchaz.enigma.utils.JarChecksums;
 import cuchaz.enigma.utils.OrderingImpl;
 import cuchaz.enigma.utils.Utils;
 
@@ -54,10 +59,18 @@ public class Enigma {
 
 	private final EnigmaProfile profile;
 	private final EnigmaServices services;
+	@Nullable
+	private final JarIndexCache indexCache;
+	@Nullable
+	private final SourceCache sourceCache;
+	private final JarChecksums jarChecksums;
 
-	private Enigma(EnigmaProfile profile, EnigmaServices services) {
+	private Enigma(EnigmaProfile profile, EnigmaServices services, @Nullable JarIndexCache indexCache, @Nullable SourceCache sourceCache, JarChecksums jarChecksums) {
 		this.profile = profile;
 		this.services = services;
+		this.indexCache = indexCache;
+		this.sourceCache = sourceCache;
+		this.jarChecksums = jarChecksums;
 	}
 
 	public static Enigma create() {
@@ -78,14 +91,39 @@ public class Enigma {
 
 	public EnigmaProject openJars(List<Path> paths, List<Path> libraries, ProgressListener progress, boolean callServices) throws IOException {
 		ClassProvider jarClassProvider = getJarClassProvider(paths);
-		ClassProvider classProvider = new CachingClassProvider(new CombiningClassProvider(jarClassProvider, getJarClassProvider(libraries), new ClasspathClassProvider()));
+		ClassProvider classProvider = new CachingClassProvider(new CombiningClassProvider(jarClassProvider, getJarClassProvider(libraries), new ClasspathClassProvider()), profile.getClassCacheSize());
 		Set<String> scope = Set.copyOf(jarClassProvider.getClassNames());
+		byte[] jarChecksum = jarChecksums.compute(paths);
+
+		JarIndex index;
+		ClassProvider classProviderWithFrames;
+
+		if (indexCache != null) {
+			progress.init(1, I18n.translate("progress.jar.indexing"));
+			progress.step(1, I18n.translate("progress.jar.indexing.cache"));
+			byte[] librariesKey = JarIndexCache.computeLibrariesKey(libraries.isEmpty() ? null : jarChecksums.compute(libraries));
+			byte[] cacheKey = JarIndexCache.computeKey(jarChecksum, librariesKey);
+			index = indexCache.load(cacheKey);
+
+			if (index != null) {
+				classProviderWithFrames = index.createClassProviderWithFrames(classProvider);
+			} else {
+				// only the classes that changed since these jars were last opened need to be visited
+				ClassIndexRecords records = indexCache.loadRecords(paths, librariesKey, Utils.zipClassChecksums(paths.toArray(new Path[0])));
+				index = JarIndex.empty();
+				classProviderWithFrames = index.indexJar(scope, classProvider, records, progress);
+				indexCache.save(cacheKey, index);
+				indexCache.saveRecords(paths, librariesKey, records);
+			}
+		} else {
+			index = JarIndex.empty();
+			classProviderWithFrames = index.indexJar(scope, classProvider, progress);
+		}
 
-		JarIndex index = JarIndex.empty();
-		ClassProvider classProviderWithFrames = index.indexJar(scope, classProvider, progress);
-		services.get(JarIndexerService.TYPE).forEach(indexer -> indexer.acceptJar(scope, classProviderWithFrames, index));
+		JarIndex finalIndex = index;
+		services.get(JarIndexerService.TYPE).forEach(indexer -> indexer.acceptJar(scope, classProviderWithFrames, finalIndex));
 
-		EnigmaProject project = new EnigmaProject(this, paths, libraries, classProvider, scope, index, Utils.zipSha1(paths.toArray(new Path[0])));
+		EnigmaProject project = new EnigmaProject(this, paths, libraries, classProvider, scope, index, jarChecksum);
 
 		if (callServices) {
 			for (ProjectService projectService : services.get(ProjectService.TYPE)) {
@@ -118,8 +156,22 @@ public class Enigma {
 		return services;
 	}
 
+	@Nullable
+	public SourceCache getSourceCache() {
+		return sourceCache;
+	}
+
+	public JarChecksums getJarChecksums() {
+		return jarChecksums;
+	}
+
 	public static class Builder {
 		private EnigmaProfile profile = EnigmaProfile.EMPTY;
+		@Nullable
+		private JarIndexCache indexCache = JarIndexCache.createDefault();
+		@Nullable
+		private SourceCache sourceCache = SourceCache.createDefault();
+		private JarChecksums jarChecksums = JarChecksums.createDefault();
 
 		private Builder() {
 		}
@@ -129,6 +181,30 @@ public class Enigma {
 			return this;
 		}
 
+		/**
+		 * Sets the cache used to skip indexing of previously opened jars, or {@code null} to always reindex.
+		 */
+		public Builder setIndexCache(@Nullable JarIndexCache indexCache) {
+			this.indexCache = indexCache;
+			return this;
+		}
+
+		/**
+		 * Sets the cache used to skip decompiling previously decompiled classes, or {@code null} to always decompile.
+		 */
+		public Builder setSourceCache(@Nullable SourceCache sourceCache) {
+			this.sourceCache = sourceCache;
+			return this;
+		}
+
+		/**
+		 * Sets how the checksums of the input jars are computed and cached.
+		 */
+		public Builder setJarChecksums(JarChecksums jarChecksums) {
+			this.jarChecksums = Objects.requireNonNull(jarChecksums, "jarChecksums cannot be null");
+			return this;
+		}
+
 		public Enigma build() {
 			PluginContext pluginContext = new PluginContext();
 
@@ -140,7 +216,7 @@ public class Enigma {
 
 			I18n.initialize(services);
 
-			return new Enigma(profile, services);
+			return new Enigma(profile, services, indexCache, sourceCache, jarChecksums);
 		}
 	}
 
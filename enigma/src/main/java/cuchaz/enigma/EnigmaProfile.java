@@ -11,6 +11,7 @@ import com.google.gson.Gson;
 import com.google.gson.annotations.SerializedName;
 import org.jetbrains.annotations.Nullable;
 
+import cuchaz.enigma.classprovider.CachingClassProvider;
 import cuchaz.enigma.translation.mapping.serde.MappingFileNameFormat;
 import cuchaz.enigma.translation.mapping.serde.MappingSaveParameters;
 
@@ -26,6 +27,10 @@ public final class EnigmaProfile {
 	@SerializedName("mapping_save_parameters")
 	private final MappingSaveParameters mappingSaveParameters = DEFAULT_MAPPING_SAVE_PARAMETERS;
 
+	@SerializedName("class_cache_size")
+	@Nullable
+	private final Long classCacheSize = null;
+
 	private EnigmaProfile() {
 	}
 
@@ -54,4 +59,15 @@ public final class EnigmaProfile {
 			return mappingSaveParameters;
 		}
 	}
+
+	/**
+	 * Returns the maximum estimated size in bytes of the classes kept in memory while a project is open.
+	 */
+	public long getClassCacheSize() {
+		if (classCacheSize == null) {
+			return CachingClassProvider.DEFAULT_MAX_WEIGHT;
+		} else {
+			return classCacheSize;
+		}
+	}
 }
@@ -4,20 +4,24 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassWriter;
@@ -33,7 +37,9 @@ import cuchaz.enigma.api.service.ObfuscationTestService;
 import cuchaz.enigma.api.view.ProjectView;
 import cuchaz.enigma.api.view.entry.EntryView;
 import cuchaz.enigma.bytecode.translators.TranslationClassVisitor;
+import cuchaz.enigma.classprovider.BytesCachingClassProvider;
 import cuchaz.enigma.classprovider.ClassProvider;
+import cuchaz.enigma.classprovider.DecompilerInputTransformingClassProvider;
 import cuchaz.enigma.classprovider.ObfuscationFixClassProvider;
 import cuchaz.enigma.source.Decompiler;
 import cuchaz.enigma.source.DecompilerService;
@@ -54,8 +60,18 @@ import cuchaz.enigma.translation.representation.entry.Entry;
 import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
 import cuchaz.enigma.translation.representation.entry.MethodEntry;
 import cuchaz.enigma.utils.I18n;
+import cuchaz.enigma.utils.JarChecksums;
+import cuchaz.enigma.utils.ZipWriter;
 
 public class EnigmaProject implements ProjectView {
+	/**
+	 * The compression level of exported jars, which can be changed with the {@code enigma.exportCompressionLevel}
+	 * system property. A level of 0 stores the classes uncompressed.
+	 */
+	public static final int DEFAULT_EXPORT_COMPRESSION_LEVEL = getDefaultExportCompressionLevel();
+	// the number of classes translated and compressed in parallel before they are written, which bounds the memory used
+	private static final int EXPORT_BATCH_SIZE = 1024;
+
 	private final Enigma enigma;
 
 	private final List<Path> jarPaths;
@@ -128,6 +144,10 @@ public class EnigmaProject implements ProjectView {
 		return jarChecksum;
 	}
 
+	public JarChecksums.Mode getJarChecksumMode() {
+		return enigma.getJarChecksums().getMode();
+	}
+
 	public EntryRemapper getMapper() {
 		return mapper;
 	}
@@ -243,6 +263,18 @@ public class EnigmaProject implements ProjectView {
 		return true;
 	}
 
+	private static int getDefaultExportCompressionLevel() {
+		int level = Integer.getInteger("enigma.exportCompressionLevel", Deflater.DEFAULT_COMPRESSION);
+
+		try {
+			ZipWriter.checkCompressionLevel(level);
+			return level;
+		} catch (IllegalArgumentException e) {
+			System.err.println("Ignoring -Denigma.exportCompressionLevel: " + e.getMessage());
+			return Deflater.DEFAULT_COMPRESSION;
+		}
+	}
+
 	public JarExport exportRemappedJar(ProgressListener progress) {
 		Collection<ClassEntry> classEntries = jarIndex.getEntryIndex().getClasses();
 		ClassProvider fixingClassProvider = new ObfuscationFixClassProvider(classProvider, jarIndex);
@@ -268,6 +300,112 @@ public class EnigmaProject implements ProjectView {
 		return new JarExport(mapper, compiled);
 	}
 
+	/**
+	 * Translates the classes of the jar and writes them to a jar file, in the order of their obfuscated names. Unlike
+	 * {@link #exportRemappedJar(ProgressListener)}, the translated classes are serialized straight away instead of
+	 * all being kept in memory, and they are translated and compressed in parallel.
+	 *
+	 * @param compressionLevel the deflate level from 1 to 9, {@link Deflater#DEFAULT_COMPRESSION}, or
+	 *                         {@link Deflater#NO_COMPRESSION} to store the classes uncompressed
+	 * @throws IllegalArgumentException if the compression level is not valid
+	 */
+	public void exportRemappedJar(Path path, int compressionLevel, ProgressListener progress) throws IOException {
+		ZipWriter.checkCompressionLevel(compressionLevel);
+		ClassProvider fixingClassProvider = new ObfuscationFixClassProvider(classProvider, jarIndex);
+		List<ClassEntry> classEntries = jarIndex.getEntryIndex().getClasses().stream().sorted(Comparator.comparing(ClassEntry::getFullName)).toList();
+
+		progress.init(classEntries.size(), I18n.translate("progress.jar.writing"));
+
+		writeJar(path, classEntries, progress, entry -> {
+			ClassWriter writer = new ClassWriter(0);
+
+			if (!fixingClassProvider.accept(entry.getFullName(), new TranslationClassVisitor(proposingTranslator, Enigma.ASM_VERSION, writer))) {
+				return null;
+			}
+
+			return ZipWriter.compress(proposingTranslator.translate(entry).getFullName() + ".class", writer.toByteArray(), compressionLevel);
+		});
+	}
+
+	/**
+	 * Decompiles the classes of the jar with the mappings applied, and writes each source to the given directory as
+	 * soon as it is decompiled. Unlike {@link JarExport#decompile}, the classes are translated when the decompiler
+	 * asks for them instead of all being translated up front, so only the classes being decompiled and a bounded
+	 * cache of the class files the decompiler resolves types from are kept in memory.
+	 */
+	public void decompileTo(Path path, ProgressListener progress, DecompilerService decompilerService, DecompileErrorStrategy errorStrategy) throws IOException {
+		ClassProvider fixingClassProvider = new ObfuscationFixClassProvider(classProvider, jarIndex);
+		// the decompiler asks for the classes by their deobfuscated names
+		Map<String, ClassEntry> obfClasses = jarIndex.getEntryIndex().getClasses().stream()
+				.collect(Collectors.toMap(entry -> proposingTranslator.translate(entry).getFullName(), Function.identity()));
+
+		ClassProvider translatingClassProvider = new DecompilerInputTransformingClassProvider(new ClassProvider() {
+			@Override
+			public Collection<String> getClassNames() {
+				return obfClasses.keySet();
+			}
+
+			@Override
+			@Nullable
+			public ClassNode get(String name) {
+				ClassEntry obfClass = obfClasses.get(name);
+
+				if (obfClass == null) {
+					return null;
+				}
+
+				ClassNode translatedNode = new ClassNode();
+				return fixingClassProvider.accept(obfClass.getFullName(), new TranslationClassVisitor(proposingTranslator, Enigma.ASM_VERSION, translatedNode)) ? translatedNode : null;
+			}
+		}, enigma.getServices());
+
+		//create a common instance outside the loop as mappings shouldn't be changing while this is happening
+		Decompiler decompiler = decompilerService.create(new BytesCachingClassProvider(translatingClassProvider), new SourceSettings(false, false));
+		List<String> classNames = obfClasses.keySet().stream().filter(name -> name.indexOf('$') == -1).toList();
+
+		AtomicInteger count = new AtomicInteger();
+		progress.init(classNames.size(), I18n.translate("progress.classes.decompiling"));
+
+		try {
+			// each worker writes its source before decompiling the next class, which bounds the sources in memory
+			classNames.parallelStream().forEach(name -> {
+				progress.step(count.getAndIncrement(), name);
+
+				String source = decompileClass(name, decompiler, mapper, errorStrategy);
+
+				if (source != null) {
+					ClassSource classSource = new ClassSource(name, source);
+
+					try {
+						classSource.writeTo(classSource.resolvePath(path));
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static <T> void writeJar(Path path, List<T> classes, ProgressListener progress, Function<T, ZipWriter.CompressedEntry> compressor) throws IOException {
+		AtomicInteger count = new AtomicInteger();
+
+		try (ZipWriter out = new ZipWriter(Files.newOutputStream(path))) {
+			for (int start = 0; start < classes.size(); start += EXPORT_BATCH_SIZE) {
+				List<ZipWriter.CompressedEntry> batch = classes.subList(start, Math.min(start + EXPORT_BATCH_SIZE, classes.size())).parallelStream().map(clazz -> {
+					ZipWriter.CompressedEntry entry = compressor.apply(clazz);
+					progress.step(count.getAndIncrement(), entry != null ? entry.name() : clazz.toString());
+					return entry;
+				}).filter(Objects::nonNull).toList();
+
+				for (ZipWriter.CompressedEntry entry : batch) {
+					out.write(entry);
+				}
+			}
+		}
+	}
+
 	public static final class JarExport {
 		private final EntryRemapper mapper;
 		private final Map<String, ClassNode> compiled;
@@ -278,24 +416,24 @@ public class EnigmaProject implements ProjectView {
 		}
 
 		public void write(Path path, ProgressListener progress) throws IOException {
-			progress.init(this.compiled.size(), I18n.translate("progress.jar.writing"));
-
-			try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(path))) {
-				AtomicInteger count = new AtomicInteger();
-
-				for (ClassNode node : this.compiled.values()) {
-					progress.step(count.getAndIncrement(), node.name);
-
-					String entryName = node.name.replace('.', '/') + ".class";
+			write(path, DEFAULT_EXPORT_COMPRESSION_LEVEL, progress);
+		}
 
-					ClassWriter writer = new ClassWriter(0);
-					node.accept(writer);
+		/**
+		 * Writes the classes in the order of their names, serializing and compressing them in parallel.
+		 *
+		 * @param compressionLevel the deflate level from 1 to 9, {@link Deflater#DEFAULT_COMPRESSION}, or
+		 *                         {@link Deflater#NO_COMPRESSION} to store the classes uncompressed
+		 */
+		public void write(Path path, int compressionLevel, ProgressListener progress) throws IOException {
+			ZipWriter.checkCompressionLevel(compressionLevel);
+			progress.init(this.compiled.size(), I18n.translate("progress.jar.writing"));
 
-					out.putNextEntry(new JarEntry(entryName));
-					out.write(writer.toByteArray());
-					out.closeEntry();
-				}
-			}
+			writeJar(path, this.compiled.keySet().stream().sorted().toList(), progress, name -> {
+				ClassWriter writer = new ClassWriter(0);
+				this.compiled.get(name).accept(writer);
+				return ZipWriter.compress(name + ".class", writer.toByteArray(), compressionLevel);
+			});
 		}
 
 		public SourceExport decompile(EnigmaProject project, ProgressListener progress, DecompilerService decompilerService, DecompileErrorStrategy errorStrategy) {
@@ -335,24 +473,7 @@ public class EnigmaProject implements ProjectView {
 			return classes.parallelStream().map(translatedNode -> {
 				progress.step(count.getAndIncrement(), translatedNode.name);
 
-				String source = null;
-
-				try {
-					source = decompileClass(translatedNode, decompiler);
-				} catch (Throwable throwable) {
-					switch (errorStrategy) {
-					case PROPAGATE:
-						throw throwable;
-					case IGNORE:
-						break;
-					case TRACE_AS_SOURCE: {
-						StringWriter writer = new StringWriter();
-						throwable.printStackTrace(new PrintWriter(writer));
-						source = writer.toString();
-						break;
-					}
-					}
-				}
+				String source = decompileClass(translatedNode.name, decompiler, mapper, errorStrategy);
 
 				if (source == null) {
 					return null;
@@ -361,9 +482,26 @@ public class EnigmaProject implements ProjectView {
 				return new ClassSource(translatedNode.name, source);
 			}).filter(Objects::nonNull);
 		}
+	}
 
-		private String decompileClass(ClassNode translatedNode, Decompiler decompiler) {
-			return decompiler.getSource(translatedNode.name, mapper).asString();
+	@Nullable
+	private static String decompileClass(String name, Decompiler decompiler, EntryRemapper mapper, DecompileErrorStrategy errorStrategy) {
+		try {
+			return decompiler.getSource(name, mapper).asString();
+		} catch (Throwable throwable) {
+			switch (errorStrategy) {
+			case PROPAGATE:
+				throw throwable;
+			case IGNORE:
+				return null;
+			case TRACE_AS_SOURCE: {
+				StringWriter writer = new StringWriter();
+				throwable.printStackTrace(new PrintWriter(writer));
+				return writer.toString();
+			}
+			}
+
+			return null;
 		}
 	}
 
@@ -475,9 +613,24 @@ public class EnigmaProject implements ProjectView {
 
 		public void writeTo(Path path) throws IOException {
 			Files.createDirectories(path.getParent());
+			// created like the source itself rather than as a private temporary file, so that it gets the default permissions
+			Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+			// left over from an interrupted export
+			Files.deleteIfExists(tempPath);
+
+			try {
+				try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+					writer.write(source);
+				}
 
-			try (BufferedWriter writer = Files.newBufferedWriter(path)) {
-				writer.write(source);
+				// write to a temporary file first so that an interrupted export never leaves a truncated source
+				try {
+					Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(tempPath);
 			}
 		}
 
@@ -1,7 +1,7 @@
 package cuchaz.enigma.analysis;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import org.jetbrains.annotations.Nullable;
@@ -42,7 +42,8 @@ public class BetterAnalyzerAdapter extends AnalyzerAdapter {
 			lastFrameStack.add(stack[0]);
 		}
 		case Opcodes.F_APPEND -> {
-			Collections.addAll(lastFrameLocals, local);
+			// ClassReader reuses its frame arrays, so they may be longer than the frame
+			lastFrameLocals.addAll(Arrays.asList(local).subList(0, numLocal));
 			lastFrameStack.clear();
 		}
 		case Opcodes.F_CHOP -> {
@@ -51,9 +52,9 @@ public class BetterAnalyzerAdapter extends AnalyzerAdapter {
 		}
 		case Opcodes.F_FULL -> {
 			lastFrameLocals.clear();
-			Collections.addAll(lastFrameLocals, local);
+			lastFrameLocals.addAll(Arrays.asList(local).subList(0, numLocal));
 			lastFrameStack.clear();
-			Collections.addAll(lastFrameStack, stack);
+			lastFrameStack.addAll(Arrays.asList(stack).subList(0, numStack));
 		}
 		default -> {
 			throw new AssertionError("Illegal frame type: " + type);
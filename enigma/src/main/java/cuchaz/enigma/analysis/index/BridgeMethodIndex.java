@@ -1,5 +1,6 @@
 package cuchaz.enigma.analysis.index;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -65,6 +66,33 @@ public class BridgeMethodIndex implements JarIndexer, BridgeMethodIndexView {
 		});
 	}
 
+	void write(IndexCacheOutput out) throws IOException {
+		writeMethodMap(out, bridgeToSpecialized);
+		writeMethodMap(out, specializedToBridge);
+	}
+
+	private static void writeMethodMap(IndexCacheOutput out, Map<MethodEntry, MethodEntry> map) throws IOException {
+		out.writeVarInt(map.size());
+
+		for (Map.Entry<MethodEntry, MethodEntry> entry : map.entrySet()) {
+			out.writeEntry(entry.getKey());
+			out.writeEntry(entry.getValue());
+		}
+	}
+
+	void read(IndexCacheInput in) throws IOException {
+		readMethodMap(in, bridgeToSpecialized);
+		readMethodMap(in, specializedToBridge);
+	}
+
+	private static void readMethodMap(IndexCacheInput in, Map<MethodEntry, MethodEntry> map) throws IOException {
+		int size = in.readVarInt();
+
+		for (int i = 0; i < size; i++) {
+			map.put(in.readEntry(MethodEntry.class), in.readEntry(MethodEntry.class));
+		}
+	}
+
 	private void indexSyntheticMethod(MethodDefEntry syntheticMethod, AccessFlags access) {
 		MethodEntry specializedMethod = findSpecializedMethod(syntheticMethod);
 
@@ -0,0 +1,164 @@
+package cuchaz.enigma.analysis.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import cuchaz.enigma.analysis.ReferenceTargetType;
+import cuchaz.enigma.translation.representation.Lambda;
+import cuchaz.enigma.translation.representation.entry.ClassDefEntry;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldDefEntry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+
+/**
+ * Everything a single class contributed to a {@link JarIndex} before processing, so that it can be
+ * replayed into a new index without visiting the class again.
+ *
+ * <p>The entry pass and the reference pass are recorded separately, since the reference pass of any
+ * class may only run once the entries of all classes are indexed.
+ */
+final class ClassIndexRecord implements JarIndexer {
+	private static final int CLASS_REFERENCE = 0, METHOD_REFERENCE = 1, FIELD_REFERENCE = 2, LAMBDA = 3;
+
+	private final byte[] hash;
+	private boolean computedFrames;
+	@Nullable
+	private ClassDefEntry classEntry;
+	private final List<FieldDefEntry> fields = new ArrayList<>();
+	private final List<MethodDefEntry> methods = new ArrayList<>();
+	private final List<Reference> references = new ArrayList<>();
+
+	ClassIndexRecord(byte[] hash) {
+		this.hash = hash;
+	}
+
+	byte[] getHash() {
+		return hash;
+	}
+
+	/**
+	 * Whether the class had no stack map frames, so that the reference pass saw frames computed from
+	 * the hierarchy of other classes. Such a record can't be reused even if the class itself didn't change.
+	 */
+	boolean hasComputedFrames() {
+		return computedFrames;
+	}
+
+	void setComputedFrames(boolean computedFrames) {
+		this.computedFrames = computedFrames;
+	}
+
+	@Override
+	public void indexClass(ClassDefEntry classEntry) {
+		this.classEntry = classEntry;
+	}
+
+	@Override
+	public void indexField(FieldDefEntry fieldEntry) {
+		fields.add(fieldEntry);
+	}
+
+	@Override
+	public void indexMethod(MethodDefEntry methodEntry) {
+		methods.add(methodEntry);
+	}
+
+	@Override
+	public void indexClassReference(MethodDefEntry callerEntry, ClassEntry referencedEntry, ReferenceTargetType targetType) {
+		references.add(new Reference(CLASS_REFERENCE, callerEntry, referencedEntry, targetType));
+	}
+
+	@Override
+	public void indexMethodReference(MethodDefEntry callerEntry, MethodEntry referencedEntry, ReferenceTargetType targetType) {
+		references.add(new Reference(METHOD_REFERENCE, callerEntry, referencedEntry, targetType));
+	}
+
+	@Override
+	public void indexFieldReference(MethodDefEntry callerEntry, FieldEntry referencedEntry, ReferenceTargetType targetType) {
+		references.add(new Reference(FIELD_REFERENCE, callerEntry, referencedEntry, targetType));
+	}
+
+	@Override
+	public void indexLambda(MethodDefEntry callerEntry, Lambda lambda, ReferenceTargetType targetType) {
+		references.add(new Reference(LAMBDA, callerEntry, lambda, targetType));
+	}
+
+	void replayEntries(JarIndexer indexer) {
+		if (classEntry == null) {
+			return;
+		}
+
+		indexer.indexClass(classEntry);
+		fields.forEach(indexer::indexField);
+		methods.forEach(indexer::indexMethod);
+	}
+
+	void replayReferences(JarIndexer indexer) {
+		for (Reference reference : references) {
+			switch (reference.kind) {
+			case CLASS_REFERENCE -> indexer.indexClassReference(reference.caller, (ClassEntry) reference.target, reference.targetType);
+			case METHOD_REFERENCE -> indexer.indexMethodReference(reference.caller, (MethodEntry) reference.target, reference.targetType);
+			case FIELD_REFERENCE -> indexer.indexFieldReference(reference.caller, (FieldEntry) reference.target, reference.targetType);
+			case LAMBDA -> indexer.indexLambda(reference.caller, (Lambda) reference.target, reference.targetType);
+			default -> throw new IllegalStateException("Unknown reference kind " + reference.kind);
+			}
+		}
+	}
+
+	void write(IndexCacheOutput out) throws IOException {
+		out.writeBytes(hash);
+		out.writeBoolean(computedFrames);
+		out.writeEntry(classEntry);
+		out.writeEntries(fields);
+		out.writeEntries(methods);
+		out.writeVarInt(references.size());
+
+		for (Reference reference : references) {
+			out.writeByte(reference.kind);
+			out.writeEntry(reference.caller);
+
+			if (reference.kind == LAMBDA) {
+				out.writeLambda((Lambda) reference.target);
+			} else {
+				out.writeEntry((Entry<?>) reference.target);
+			}
+
+			out.writeTargetType(reference.targetType);
+		}
+	}
+
+	static ClassIndexRecord read(IndexCacheInput in) throws IOException {
+		ClassIndexRecord record = new ClassIndexRecord(in.readBytes());
+		record.computedFrames = in.readBoolean();
+		record.classEntry = in.readEntry(ClassDefEntry.class);
+		record.fields.addAll(in.readEntries(FieldDefEntry.class));
+		record.methods.addAll(in.readEntries(MethodDefEntry.class));
+		int size = in.readVarInt();
+
+		for (int i = 0; i < size; i++) {
+			int kind = in.readUnsignedByte();
+			MethodDefEntry caller = in.readEntry(MethodDefEntry.class);
+
+			Object target = switch (kind) {
+			case CLASS_REFERENCE -> in.readEntry(ClassEntry.class);
+			case METHOD_REFERENCE -> in.readEntry(MethodEntry.class);
+			case FIELD_REFERENCE -> in.readEntry(FieldEntry.class);
+			case LAMBDA -> in.readLambda();
+			default -> throw new IOException("Unknown reference kind in index cache");
+			};
+
+			record.references.add(new Reference(kind, caller, target, in.readTargetType()));
+		}
+
+		return record;
+	}
+
+	private record Reference(int kind, MethodDefEntry caller, Object target, ReferenceTargetType targetType) {
+	}
+}
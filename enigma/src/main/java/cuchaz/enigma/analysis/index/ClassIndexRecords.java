@@ -0,0 +1,89 @@
+package cuchaz.enigma.analysis.index;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The per-class contributions to a {@link JarIndex}, keyed by class name and tagged with the hash
+ * of each class' bytecode.
+ *
+ * <p>Passing the records of a previous version of a jar to
+ * {@link JarIndex#indexJar(Set, cuchaz.enigma.classprovider.ClassProvider, ClassIndexRecords, cuchaz.enigma.ProgressListener)}
+ * makes indexing incremental: the contributions of classes whose hash didn't change are replayed,
+ * and only the remaining classes are visited. The records are updated in place, so they can be
+ * stored and used for the next version.
+ */
+public final class ClassIndexRecords {
+	private final Map<String, byte[]> classHashes;
+	private final ConcurrentMap<String, ClassIndexRecord> records = new ConcurrentHashMap<>();
+	private final Set<String> unchangedClasses;
+
+	/**
+	 * Creates empty records, so that indexing records the contributions of every class.
+	 *
+	 * @param classHashes the hashes of the classes that are about to be indexed, by internal name
+	 */
+	public ClassIndexRecords(Map<String, byte[]> classHashes) {
+		this.classHashes = classHashes;
+		this.unchangedClasses = Collections.emptySet();
+	}
+
+	ClassIndexRecords(Map<String, byte[]> classHashes, Map<String, ClassIndexRecord> previousRecords) {
+		this.classHashes = classHashes;
+
+		previousRecords.forEach((className, record) -> {
+			if (!record.hasComputedFrames() && Arrays.equals(record.getHash(), classHashes.get(className))) {
+				records.put(className, record);
+			}
+		});
+
+		this.unchangedClasses = new HashSet<>(records.keySet());
+	}
+
+	/**
+	 * Returns whether the class has the same hash as when its contributions were recorded.
+	 */
+	public boolean isUnchanged(String className) {
+		return unchangedClasses.contains(className);
+	}
+
+	/**
+	 * Returns the number of classes whose contributions can be replayed.
+	 */
+	public int getUnchangedCount() {
+		return unchangedClasses.size();
+	}
+
+	@Nullable
+	ClassIndexRecord get(String className) {
+		return records.get(className);
+	}
+
+	/**
+	 * Starts a new record for a class that has to be visited. Classes without a known hash are
+	 * visited but not recorded, since they could never be reused.
+	 */
+	@Nullable
+	ClassIndexRecord create(String className) {
+		byte[] hash = classHashes.get(className);
+
+		if (hash == null) {
+			return null;
+		}
+
+		ClassIndexRecord record = new ClassIndexRecord(hash);
+		records.put(className, record);
+		return record;
+	}
+
+	Map<String, ClassIndexRecord> getRecords() {
+		return records;
+	}
+}
@@ -0,0 +1,95 @@
+package cuchaz.enigma.analysis.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A lock-free disjoint-set forest over a fixed set of elements, which can be joined from parallel streams.
+ * Joining an element that isn't part of the forest does nothing.
+ */
+final class DisjointSets<T> {
+	private final List<T> elements;
+	private final Map<T, Integer> ids;
+	private final AtomicIntegerArray parents;
+
+	DisjointSets(Collection<? extends T> elements) {
+		this.elements = new ArrayList<>(elements);
+		this.ids = new HashMap<>(this.elements.size() * 2);
+		this.parents = new AtomicIntegerArray(this.elements.size());
+
+		for (int i = 0; i < this.elements.size(); i++) {
+			ids.put(this.elements.get(i), i);
+			parents.set(i, i);
+		}
+	}
+
+	void union(T elementA, T elementB) {
+		Integer idA = ids.get(elementA);
+		Integer idB = ids.get(elementB);
+
+		if (idA == null || idB == null) {
+			return;
+		}
+
+		int rootA = idA;
+		int rootB = idB;
+
+		while (true) {
+			rootA = find(rootA);
+			rootB = find(rootB);
+
+			if (rootA == rootB) {
+				return;
+			}
+
+			// always link the lower root below the higher one, and only if it's still a root
+			if (rootA > rootB) {
+				int swap = rootA;
+				rootA = rootB;
+				rootB = swap;
+			}
+
+			if (parents.compareAndSet(rootA, rootA, rootB)) {
+				return;
+			}
+		}
+	}
+
+	private int find(int id) {
+		while (true) {
+			int parent = parents.get(id);
+
+			if (parent == id) {
+				return id;
+			}
+
+			// path halving
+			int grandparent = parents.get(parent);
+
+			if (parent != grandparent) {
+				parents.compareAndSet(id, parent, grandparent);
+			}
+
+			id = grandparent;
+		}
+	}
+
+	/**
+	 * Collects the sets in one sweep over the elements. This must not run concurrently with {@link #union}.
+	 */
+	Collection<Set<T>> getSets() {
+		Map<Integer, Set<T>> sets = new HashMap<>();
+
+		for (int i = 0; i < elements.size(); i++) {
+			sets.computeIfAbsent(find(i), root -> new HashSet<>()).add(elements.get(i));
+		}
+
+		return sets.values();
+	}
+}
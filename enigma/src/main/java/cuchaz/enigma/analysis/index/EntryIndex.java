@@ -1,6 +1,8 @@
 package cuchaz.enigma.analysis.index;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -42,6 +44,40 @@ public class EntryIndex implements JarIndexer, EntryIndexView {
 		fields.put(fieldEntry, fieldEntry.getAccess());
 	}
 
+	void write(IndexCacheOutput out) throws IOException {
+		writeAccessMap(out, classes);
+		writeAccessMap(out, fields);
+		writeAccessMap(out, methods);
+		out.writeEntries(definitions.values());
+	}
+
+	private static void writeAccessMap(IndexCacheOutput out, Map<? extends Entry<?>, AccessFlags> map) throws IOException {
+		out.writeVarInt(map.size());
+
+		for (Map.Entry<? extends Entry<?>, AccessFlags> entry : map.entrySet()) {
+			out.writeEntry(entry.getKey());
+			out.writeVarInt(entry.getValue().getFlags());
+		}
+	}
+
+	void read(IndexCacheInput in) throws IOException {
+		readAccessMap(in, classes, ClassEntry.class);
+		readAccessMap(in, fields, FieldEntry.class);
+		readAccessMap(in, methods, MethodEntry.class);
+
+		for (ClassDefEntry definition : in.readEntries(ClassDefEntry.class)) {
+			definitions.put(definition, definition);
+		}
+	}
+
+	private static <E extends Entry<?>> void readAccessMap(IndexCacheInput in, Map<E, AccessFlags> map, Class<E> type) throws IOException {
+		int size = in.readVarInt();
+
+		for (int i = 0; i < size; i++) {
+			map.put(in.readEntry(type), new AccessFlags(in.readVarInt()));
+		}
+	}
+
 	public boolean hasClass(ClassEntry entry) {
 		return classes.containsKey(entry);
 	}
@@ -0,0 +1,85 @@
+package cuchaz.enigma.analysis.index;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import cuchaz.enigma.translation.representation.MethodDescriptor;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+
+/**
+ * Hands out canonical instances of the entries and descriptors created while indexing, so that a class,
+ * method or field referenced from thousands of call sites is only kept in memory once.
+ *
+ * <p>Only plain {@link ClassEntry}, {@link MethodEntry} and {@link FieldEntry} instances are pooled. Def
+ * entries compare equal to their plain counterparts but carry more information, so they are never
+ * returned in place of a plain entry and are never pooled themselves.
+ */
+public final class EntryPool {
+	private final ConcurrentMap<String, String> names = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ClassEntry> classes = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, TypeDescriptor> typeDescriptors = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, MethodDescriptor> methodDescriptors = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Entry<?>, Entry<?>> members = new ConcurrentHashMap<>();
+
+	public String getName(String name) {
+		String existing = names.putIfAbsent(name, name);
+		return existing != null ? existing : name;
+	}
+
+	public ClassEntry getClassEntry(String name) {
+		return classes.computeIfAbsent(name, ClassEntry::new);
+	}
+
+	public TypeDescriptor getTypeDescriptor(String desc) {
+		return typeDescriptors.computeIfAbsent(desc, TypeDescriptor::new);
+	}
+
+	public MethodDescriptor getMethodDescriptor(String desc) {
+		return methodDescriptors.computeIfAbsent(desc, MethodDescriptor::new);
+	}
+
+	public MethodEntry getMethodEntry(String owner, String name, String desc) {
+		return intern(new MethodEntry(getClassEntry(owner), getName(name), getMethodDescriptor(desc)));
+	}
+
+	public FieldEntry getFieldEntry(String owner, String name, String desc) {
+		return intern(new FieldEntry(getClassEntry(owner), getName(name), getTypeDescriptor(desc)));
+	}
+
+	/**
+	 * Releases the pooled instances once indexing is done. The pool can still be used afterwards, but the entries
+	 * it hands out are no longer shared with the ones pooled before.
+	 */
+	public void clear() {
+		names.clear();
+		classes.clear();
+		typeDescriptors.clear();
+		methodDescriptors.clear();
+		members.clear();
+	}
+
+	/**
+	 * Returns the pooled instance equal to the given entry, pooling it if there is none yet.
+	 * Entries of any other type than a plain class, method or field entry are returned as is.
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends Entry<?>> E intern(E entry) {
+		Class<?> type = entry.getClass();
+
+		if (type == ClassEntry.class) {
+			ClassEntry existing = classes.putIfAbsent(((ClassEntry) entry).getFullName(), (ClassEntry) entry);
+			return existing != null ? (E) existing : entry;
+		}
+
+		if (type != MethodEntry.class && type != FieldEntry.class) {
+			return entry;
+		}
+
+		Entry<?> existing = members.putIfAbsent(entry, entry);
+		return existing != null ? (E) existing : entry;
+	}
+}
@@ -0,0 +1,243 @@
+package cuchaz.enigma.analysis.index;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jetbrains.annotations.Nullable;
+
+import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.analysis.ReferenceTargetType;
+import cuchaz.enigma.translation.representation.AccessFlags;
+import cuchaz.enigma.translation.representation.Lambda;
+import cuchaz.enigma.translation.representation.MethodDescriptor;
+import cuchaz.enigma.translation.representation.Signature;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
+import cuchaz.enigma.translation.representation.entry.ClassDefEntry;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldDefEntry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.translation.representation.entry.ParentedEntry;
+
+/**
+ * Reads index data written by {@link IndexCacheOutput} from a buffer, which wraps the bytes of a whole cache file.
+ */
+final class IndexCacheInput {
+	private final ByteBuffer buffer;
+	private final List<String> strings = new ArrayList<>();
+	private final List<Entry<?>> entries = new ArrayList<>();
+
+	IndexCacheInput(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	int readInt() throws IOException {
+		try {
+			return buffer.getInt();
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of index cache", e);
+		}
+	}
+
+	byte[] readBytes() throws IOException {
+		byte[] bytes = new byte[readVarInt()];
+
+		try {
+			buffer.get(bytes);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of index cache", e);
+		}
+
+		return bytes;
+	}
+
+	int readVarInt() throws IOException {
+		try {
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+				if (shift > 28) {
+					throw new IOException("Malformed varint in index cache");
+				}
+
+				b = buffer.get();
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+
+			return value;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of index cache", e);
+		}
+	}
+
+	int readUnsignedByte() throws IOException {
+		try {
+			return buffer.get() & 0xFF;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Unexpected end of index cache", e);
+		}
+	}
+
+	boolean readBoolean() throws IOException {
+		return readUnsignedByte() != 0;
+	}
+
+	@Nullable
+	String readString() throws IOException {
+		int id = readVarInt() - 1;
+
+		if (id < 0) {
+			return null;
+		} else if (id < strings.size()) {
+			return strings.get(id);
+		} else if (id != strings.size()) {
+			throw new IOException("Invalid string id " + id + " in index cache");
+		}
+
+		String value = new String(readBytes(), StandardCharsets.UTF_8);
+		strings.add(value);
+		return value;
+	}
+
+	List<String> readStrings() throws IOException {
+		int size = readVarInt();
+		List<String> values = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			values.add(readString());
+		}
+
+		return values;
+	}
+
+	@Nullable
+	Entry<?> readEntry() throws IOException {
+		int id = readVarInt() - 1;
+
+		if (id < 0) {
+			return null;
+		} else if (id < entries.size()) {
+			Entry<?> entry = entries.get(id);
+
+			if (entry == null) {
+				throw new IOException("Cyclic entry " + id + " in index cache");
+			}
+
+			return entry;
+		} else if (id != entries.size()) {
+			throw new IOException("Invalid entry id " + id + " in index cache");
+		}
+
+		// reserve the slot, mirroring the writer
+		entries.add(null);
+
+		Entry<?> entry = switch (readUnsignedByte()) {
+		case IndexCacheOutput.ENTRY_CLASS -> new ClassEntry(readString());
+		case IndexCacheOutput.ENTRY_CLASS_DEF -> {
+			String name = readString();
+			Signature signature = Signature.createSignature(readString());
+			AccessFlags access = new AccessFlags(readVarInt());
+			ClassEntry superClass = readEntry(ClassEntry.class);
+			ClassEntry[] interfaces = new ClassEntry[readVarInt()];
+
+			for (int i = 0; i < interfaces.length; i++) {
+				interfaces[i] = readEntry(ClassEntry.class);
+			}
+
+			yield new ClassDefEntry(name, signature, access, superClass, interfaces);
+		}
+		case IndexCacheOutput.ENTRY_FIELD -> new FieldEntry(readEntry(ClassEntry.class), readString(), new TypeDescriptor(readString()));
+		case IndexCacheOutput.ENTRY_FIELD_DEF -> new FieldDefEntry(readEntry(ClassEntry.class), readString(), new TypeDescriptor(readString()), Signature.createTypedSignature(readString()), new AccessFlags(readVarInt()));
+		case IndexCacheOutput.ENTRY_METHOD -> new MethodEntry(readEntry(ClassEntry.class), readString(), new MethodDescriptor(readString()));
+		case IndexCacheOutput.ENTRY_METHOD_DEF -> new MethodDefEntry(readEntry(ClassEntry.class), readString(), new MethodDescriptor(readString()), Signature.createSignature(readString()), new AccessFlags(readVarInt()));
+		default -> throw new IOException("Unknown entry type in index cache");
+		};
+
+		entries.set(id, entry);
+		return entry;
+	}
+
+	@Nullable
+	<E extends Entry<?>> E readEntry(Class<E> type) throws IOException {
+		Entry<?> entry = readEntry();
+
+		if (entry != null && !type.isInstance(entry)) {
+			throw new IOException("Expected " + type.getSimpleName() + " in index cache, got " + entry.getClass().getSimpleName());
+		}
+
+		return type.cast(entry);
+	}
+
+	<E extends Entry<?>> List<E> readEntries(Class<E> type) throws IOException {
+		int size = readVarInt();
+		List<E> values = new ArrayList<>(size);
+
+		for (int i = 0; i < size; i++) {
+			values.add(readEntry(type));
+		}
+
+		return values;
+	}
+
+	<E extends Entry<?>, C extends Entry<?>> EntryReference<E, C> readReference(Class<E> entryType, Class<C> contextType) throws IOException {
+		E entry = readEntry(entryType);
+		C context = readEntry(contextType);
+		ReferenceTargetType targetType = readTargetType();
+		boolean named = readBoolean();
+
+		if (entry == null) {
+			throw new IOException("Reference without entry in index cache");
+		}
+
+		return new EntryReference<>(entry, named ? entry.getName() : null, context, targetType);
+	}
+
+	ReferenceTargetType readTargetType() throws IOException {
+		return switch (readUnsignedByte()) {
+		case IndexCacheOutput.TARGET_NONE -> ReferenceTargetType.none();
+		case IndexCacheOutput.TARGET_UNINITIALIZED -> ReferenceTargetType.uninitialized();
+		case IndexCacheOutput.TARGET_CLASS -> ReferenceTargetType.classType(readEntry(ClassEntry.class));
+		default -> throw new IOException("Unknown reference target type in index cache");
+		};
+	}
+
+	Lambda readLambda() throws IOException {
+		String invokedName = readString();
+		MethodDescriptor invokedType = new MethodDescriptor(readString());
+		MethodDescriptor samMethodType = new MethodDescriptor(readString());
+		ParentedEntry<?> implMethod = readEntry(ParentedEntry.class);
+		MethodDescriptor instantiatedMethodType = new MethodDescriptor(readString());
+		return new Lambda(invokedName, invokedType, samMethodType, implMethod, instantiatedMethodType);
+	}
+
+	<K extends Entry<?>, V> void readMultimap(ConcurrentMap<K, List<V>> map, Class<K> keyType, ValueReader<V> valueReader) throws IOException {
+		int size = readVarInt();
+
+		for (int i = 0; i < size; i++) {
+			K key = readEntry(keyType);
+			int valueCount = readVarInt();
+			List<V> values = new ArrayList<>(valueCount);
+
+			for (int j = 0; j < valueCount; j++) {
+				values.add(valueReader.read(this));
+			}
+
+			map.put(key, values);
+		}
+	}
+
+	@FunctionalInterface
+	interface ValueReader<V> {
+		V read(IndexCacheInput input) throws IOException;
+	}
+}
@@ -0,0 +1,220 @@
+package cuchaz.enigma.analysis.index;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+
+import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.analysis.ReferenceTargetType;
+import cuchaz.enigma.translation.representation.Lambda;
+import cuchaz.enigma.translation.representation.entry.ClassDefEntry;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldDefEntry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+
+/**
+ * Writes index data in the format read by {@link IndexCacheInput}.
+ *
+ * <p>Strings and entries are pooled: the first occurrence is written inline and every
+ * later occurrence is written as an id, so the output stays compact and the reader
+ * gets canonical instances for free.
+ */
+final class IndexCacheOutput {
+	static final int ENTRY_CLASS = 0, ENTRY_CLASS_DEF = 1, ENTRY_FIELD = 2, ENTRY_FIELD_DEF = 3, ENTRY_METHOD = 4, ENTRY_METHOD_DEF = 5;
+	static final int TARGET_NONE = 0, TARGET_UNINITIALIZED = 1, TARGET_CLASS = 2;
+
+	private final DataOutputStream out;
+	private final Map<String, Integer> strings = new HashMap<>();
+	private final Map<EntryKey, Integer> entries = new HashMap<>();
+
+	IndexCacheOutput(OutputStream out) {
+		this.out = new DataOutputStream(out);
+	}
+
+	void writeInt(int value) throws IOException {
+		out.writeInt(value);
+	}
+
+	void writeBytes(byte[] bytes) throws IOException {
+		writeVarInt(bytes.length);
+		out.write(bytes);
+	}
+
+	void writeBoolean(boolean value) throws IOException {
+		out.writeBoolean(value);
+	}
+
+	void writeByte(int value) throws IOException {
+		out.writeByte(value);
+	}
+
+	void writeVarInt(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.writeByte(value);
+	}
+
+	void writeString(@Nullable String value) throws IOException {
+		if (value == null) {
+			writeVarInt(0);
+			return;
+		}
+
+		Integer id = strings.get(value);
+
+		if (id != null) {
+			writeVarInt(id + 1);
+			return;
+		}
+
+		id = strings.size();
+		strings.put(value, id);
+		writeVarInt(id + 1);
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		out.write(bytes);
+	}
+
+	void writeStrings(Collection<String> values) throws IOException {
+		writeVarInt(values.size());
+
+		for (String value : values) {
+			writeString(value);
+		}
+	}
+
+	void writeEntry(@Nullable Entry<?> entry) throws IOException {
+		if (entry == null) {
+			writeVarInt(0);
+			return;
+		}
+
+		EntryKey key = new EntryKey(entry.getClass(), entry);
+		Integer id = entries.get(key);
+
+		if (id != null) {
+			writeVarInt(id + 1);
+			return;
+		}
+
+		// reserve the id before writing the body, since the body may pool further entries
+		id = entries.size();
+		entries.put(key, id);
+		writeVarInt(id + 1);
+
+		if (entry instanceof ClassDefEntry classDef) {
+			out.writeByte(ENTRY_CLASS_DEF);
+			writeString(classDef.getFullName());
+			writeString(classDef.getSignature().getSignature());
+			writeVarInt(classDef.getAccess().getFlags());
+			writeEntry(classDef.getSuperClass());
+			writeVarInt(classDef.getInterfaces().length);
+
+			for (ClassEntry interfaceEntry : classDef.getInterfaces()) {
+				writeEntry(interfaceEntry);
+			}
+		} else if (entry instanceof ClassEntry classEntry) {
+			out.writeByte(ENTRY_CLASS);
+			writeString(classEntry.getFullName());
+		} else if (entry instanceof FieldDefEntry fieldDef) {
+			out.writeByte(ENTRY_FIELD_DEF);
+			writeEntry(fieldDef.getParent());
+			writeString(fieldDef.getName());
+			writeString(fieldDef.getDesc().toString());
+			writeString(fieldDef.getSignature().getSignature());
+			writeVarInt(fieldDef.getAccess().getFlags());
+		} else if (entry instanceof FieldEntry fieldEntry) {
+			out.writeByte(ENTRY_FIELD);
+			writeEntry(fieldEntry.getParent());
+			writeString(fieldEntry.getName());
+			writeString(fieldEntry.getDesc().toString());
+		} else if (entry instanceof MethodDefEntry methodDef) {
+			out.writeByte(ENTRY_METHOD_DEF);
+			writeEntry(methodDef.getParent());
+			writeString(methodDef.getName());
+			writeString(methodDef.getDesc().toString());
+			writeString(methodDef.getSignature().getSignature());
+			writeVarInt(methodDef.getAccess().getFlags());
+		} else if (entry instanceof MethodEntry methodEntry) {
+			out.writeByte(ENTRY_METHOD);
+			writeEntry(methodEntry.getParent());
+			writeString(methodEntry.getName());
+			writeString(methodEntry.getDesc().toString());
+		} else {
+			throw new IOException("Don't know how to serialize entry of type " + entry.getClass().getSimpleName());
+		}
+	}
+
+	void writeEntries(Collection<? extends Entry<?>> values) throws IOException {
+		writeVarInt(values.size());
+
+		for (Entry<?> value : values) {
+			writeEntry(value);
+		}
+	}
+
+	void writeReference(EntryReference<?, ?> reference) throws IOException {
+		writeEntry(reference.entry);
+		writeEntry(reference.context);
+		writeTargetType(reference.targetType);
+		writeBoolean(reference.isNamed());
+	}
+
+	void writeTargetType(ReferenceTargetType targetType) throws IOException {
+		switch (targetType.getKind()) {
+		case NONE -> out.writeByte(TARGET_NONE);
+		case UNINITIALIZED -> out.writeByte(TARGET_UNINITIALIZED);
+		case CLASS_TYPE -> {
+			out.writeByte(TARGET_CLASS);
+			writeEntry(((ReferenceTargetType.ClassType) targetType).getEntry());
+		}
+		}
+	}
+
+	void writeLambda(Lambda lambda) throws IOException {
+		writeString(lambda.getInvokedName());
+		writeString(lambda.getInvokedType().toString());
+		writeString(lambda.getSamMethodType().toString());
+		writeEntry(lambda.getImplMethod());
+		writeString(lambda.getInstantiatedMethodType().toString());
+	}
+
+	<K extends Entry<?>, V> void writeMultimap(Map<K, List<V>> map, ValueWriter<V> valueWriter) throws IOException {
+		writeVarInt(map.size());
+
+		for (Map.Entry<K, List<V>> entry : map.entrySet()) {
+			writeEntry(entry.getKey());
+			writeVarInt(entry.getValue().size());
+
+			for (V value : entry.getValue()) {
+				valueWriter.write(this, value);
+			}
+		}
+	}
+
+	void flush() throws IOException {
+		out.flush();
+	}
+
+	@FunctionalInterface
+	interface ValueWriter<V> {
+		void write(IndexCacheOutput output, V value) throws IOException;
+	}
+
+	private record EntryKey(Class<?> type, Entry<?> entry) {
+	}
+}
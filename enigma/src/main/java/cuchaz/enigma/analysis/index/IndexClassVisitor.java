@@ -4,22 +4,44 @@ import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
 
+import cuchaz.enigma.translation.representation.AccessFlags;
+import cuchaz.enigma.translation.representation.Signature;
 import cuchaz.enigma.translation.representation.entry.ClassDefEntry;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.FieldDefEntry;
 import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
 
 public class IndexClassVisitor extends ClassVisitor {
 	private final JarIndexer indexer;
+	private final EntryPool entryPool;
 	private ClassDefEntry classEntry;
+	private int classVersion;
 
-	public IndexClassVisitor(JarIndex indexer, int api) {
+	public IndexClassVisitor(JarIndexer indexer, int api) {
+		this(indexer, new EntryPool(), api);
+	}
+
+	public IndexClassVisitor(JarIndexer indexer, EntryPool entryPool, int api) {
 		super(api);
 		this.indexer = indexer;
+		this.entryPool = entryPool;
+	}
+
+	int getClassVersion() {
+		return classVersion;
 	}
 
 	@Override
 	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-		classEntry = ClassDefEntry.parse(access, name, signature, superName, interfaces);
+		classVersion = version;
+		ClassEntry superClass = superName != null ? entryPool.getClassEntry(superName) : null;
+		ClassEntry[] interfaceClasses = new ClassEntry[interfaces.length];
+
+		for (int i = 0; i < interfaces.length; i++) {
+			interfaceClasses[i] = entryPool.getClassEntry(interfaces[i]);
+		}
+
+		classEntry = new ClassDefEntry(name, Signature.createSignature(signature), new AccessFlags(access), superClass, interfaceClasses);
 		indexer.indexClass(classEntry);
 
 		super.visit(version, access, name, signature, superName, interfaces);
@@ -27,14 +49,14 @@ public class IndexClassVisitor extends ClassVisitor {
 
 	@Override
 	public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-		indexer.indexField(FieldDefEntry.parse(classEntry, access, name, desc, signature));
+		indexer.indexField(new FieldDefEntry(classEntry, entryPool.getName(name), entryPool.getTypeDescriptor(desc), Signature.createTypedSignature(signature), new AccessFlags(access)));
 
 		return super.visitField(access, name, desc, signature, value);
 	}
 
 	@Override
 	public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-		indexer.indexMethod(MethodDefEntry.parse(classEntry, access, name, desc, signature));
+		indexer.indexMethod(new MethodDefEntry(classEntry, entryPool.getName(name), entryPool.getMethodDescriptor(desc), Signature.createSignature(signature), new AccessFlags(access)));
 
 		return super.visitMethod(access, name, desc, signature, exceptions);
 	}
@@ -13,52 +13,57 @@ import cuchaz.enigma.analysis.BetterAnalyzerAdapter;
 import cuchaz.enigma.analysis.ReferenceTargetType;
 import cuchaz.enigma.translation.representation.AccessFlags;
 import cuchaz.enigma.translation.representation.Lambda;
-import cuchaz.enigma.translation.representation.MethodDescriptor;
 import cuchaz.enigma.translation.representation.Signature;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
-import cuchaz.enigma.translation.representation.entry.FieldEntry;
 import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
-import cuchaz.enigma.translation.representation.entry.MethodEntry;
 import cuchaz.enigma.translation.representation.entry.ParentedEntry;
 
 public class IndexReferenceVisitor extends ClassVisitor {
 	private final JarIndexer indexer;
+	private final EntryPool entryPool;
 	private ClassEntry classEntry;
 	private String className;
 
 	public IndexReferenceVisitor(JarIndexer indexer, int api) {
+		this(indexer, new EntryPool(), api);
+	}
+
+	public IndexReferenceVisitor(JarIndexer indexer, EntryPool entryPool, int api) {
 		super(api);
 		this.indexer = indexer;
+		this.entryPool = entryPool;
 	}
 
 	@Override
 	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-		classEntry = new ClassEntry(name);
+		classEntry = entryPool.getClassEntry(name);
 		className = name;
 	}
 
 	@Override
 	public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-		MethodDefEntry entry = new MethodDefEntry(classEntry, name, new MethodDescriptor(desc), Signature.createSignature(signature), new AccessFlags(access));
-		return new IndexReferenceMethodVisitor(api, className, access, name, desc, entry, indexer);
+		MethodDefEntry entry = new MethodDefEntry(classEntry, entryPool.getName(name), entryPool.getMethodDescriptor(desc), Signature.createSignature(signature), new AccessFlags(access));
+		return new IndexReferenceMethodVisitor(api, className, access, name, desc, entry, indexer, entryPool);
 	}
 
 	private static class IndexReferenceMethodVisitor extends BetterAnalyzerAdapter {
 		private final MethodDefEntry callerEntry;
 		private final JarIndexer indexer;
+		private final EntryPool entryPool;
 
-		IndexReferenceMethodVisitor(int api, String owner, int access, String name, String descriptor, MethodDefEntry callerEntry, JarIndexer indexer) {
+		IndexReferenceMethodVisitor(int api, String owner, int access, String name, String descriptor, MethodDefEntry callerEntry, JarIndexer indexer, EntryPool entryPool) {
 			super(api, owner, access, name, descriptor, null);
 			this.callerEntry = callerEntry;
 			this.indexer = indexer;
+			this.entryPool = entryPool;
 		}
 
 		@Override
 		public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
 			switch (opcode) {
-			case Opcodes.GETSTATIC, Opcodes.PUTSTATIC -> indexer.indexFieldReference(callerEntry, FieldEntry.parse(owner, name, descriptor), ReferenceTargetType.none());
-			case Opcodes.GETFIELD -> indexer.indexFieldReference(callerEntry, FieldEntry.parse(owner, name, descriptor), getReferenceTargetType(0));
-			case Opcodes.PUTFIELD -> indexer.indexFieldReference(callerEntry, FieldEntry.parse(owner, name, descriptor), getReferenceTargetType(Type.getType(descriptor).getSize()));
+			case Opcodes.GETSTATIC, Opcodes.PUTSTATIC -> indexer.indexFieldReference(callerEntry, entryPool.getFieldEntry(owner, name, descriptor), ReferenceTargetType.none());
+			case Opcodes.GETFIELD -> indexer.indexFieldReference(callerEntry, entryPool.getFieldEntry(owner, name, descriptor), getReferenceTargetType(0));
+			case Opcodes.PUTFIELD -> indexer.indexFieldReference(callerEntry, entryPool.getFieldEntry(owner, name, descriptor), getReferenceTargetType(Type.getType(descriptor).getSize()));
 			}
 
 			super.visitFieldInsn(opcode, owner, name, descriptor);
@@ -71,7 +76,7 @@ public class IndexReferenceVisitor extends ClassVisitor {
 					type = type.getElementType();
 				}
 
-				indexer.indexClassReference(callerEntry, ClassEntry.parse(type.getInternalName()), ReferenceTargetType.none());
+				indexer.indexClassReference(callerEntry, entryPool.getClassEntry(type.getInternalName()), ReferenceTargetType.none());
 			}
 
 			super.visitLdcInsn(value);
@@ -86,7 +91,7 @@ public class IndexReferenceVisitor extends ClassVisitor {
 					classType = classType.getElementType();
 				}
 
-				indexer.indexClassReference(callerEntry, ClassEntry.parse(classType.getInternalName()), ReferenceTargetType.none());
+				indexer.indexClassReference(callerEntry, entryPool.getClassEntry(classType.getInternalName()), ReferenceTargetType.none());
 			}
 
 			super.visitTypeInsn(opcode, type);
@@ -103,7 +108,7 @@ public class IndexReferenceVisitor extends ClassVisitor {
 				targetType = getReferenceTargetType(argSize);
 			}
 
-			indexer.indexMethodReference(callerEntry, MethodEntry.parse(owner, name, descriptor), targetType);
+			indexer.indexMethodReference(callerEntry, entryPool.getMethodEntry(owner, name, descriptor), targetType);
 
 			super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
 		}
@@ -132,7 +137,7 @@ public class IndexReferenceVisitor extends ClassVisitor {
 					targetType = ReferenceTargetType.none();
 				}
 
-				indexer.indexLambda(callerEntry, new Lambda(name, new MethodDescriptor(descriptor), new MethodDescriptor(samMethodType.getDescriptor()), getHandleEntry(implMethod), new MethodDescriptor(instantiatedMethodType.getDescriptor())), targetType);
+				indexer.indexLambda(callerEntry, new Lambda(name, entryPool.getMethodDescriptor(descriptor), entryPool.getMethodDescriptor(samMethodType.getDescriptor()), getHandleEntry(implMethod), entryPool.getMethodDescriptor(instantiatedMethodType.getDescriptor())), targetType);
 			}
 
 			super.visitInvokeDynamicInsn(name, descriptor, bootstrapMethodHandle, bootstrapMethodArguments);
@@ -159,9 +164,9 @@ public class IndexReferenceVisitor extends ClassVisitor {
 
 			if (type.startsWith("[")) {
 				// array type
-				return ReferenceTargetType.classType(new ClassEntry("java/lang/Object"));
+				return ReferenceTargetType.classType(entryPool.getClassEntry("java/lang/Object"));
 			} else {
-				return ReferenceTargetType.classType(new ClassEntry(type));
+				return ReferenceTargetType.classType(entryPool.getClassEntry(type));
 			}
 		}
 
@@ -190,13 +195,13 @@ public class IndexReferenceVisitor extends ClassVisitor {
 			return result.append(']').toString();
 		}
 
-		private static ParentedEntry<?> getHandleEntry(Handle handle) {
+		private ParentedEntry<?> getHandleEntry(Handle handle) {
 			return switch (handle.getTag()) {
 			case Opcodes.H_GETFIELD, Opcodes.H_GETSTATIC, Opcodes.H_PUTFIELD, Opcodes.H_PUTSTATIC ->
-					FieldEntry.parse(handle.getOwner(), handle.getName(), handle.getDesc());
+					entryPool.getFieldEntry(handle.getOwner(), handle.getName(), handle.getDesc());
 			case Opcodes.H_INVOKEINTERFACE, Opcodes.H_INVOKESPECIAL, Opcodes.H_INVOKESTATIC,
 				Opcodes.H_INVOKEVIRTUAL, Opcodes.H_NEWINVOKESPECIAL ->
-					MethodEntry.parse(handle.getOwner(), handle.getName(), handle.getDesc());
+					entryPool.getMethodEntry(handle.getOwner(), handle.getName(), handle.getDesc());
 			default -> throw new RuntimeException("Invalid handle tag " + handle.getTag());
 			};
 		}
@@ -11,15 +11,18 @@
 
 package cuchaz.enigma.analysis.index;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 import cuchaz.enigma.api.view.entry.ClassEntryView;
 import cuchaz.enigma.api.view.index.InheritanceIndexView;
@@ -32,6 +35,10 @@ public class InheritanceIndex implements JarIndexer, InheritanceIndexView {
 	private final ConcurrentMap<ClassEntry, List<ClassEntry>> classParents = new ConcurrentHashMap<>();
 	private final ConcurrentMap<ClassEntry, List<ClassEntry>> classChildren = new ConcurrentHashMap<>();
 
+	// transitive closures, computed when first requested and discarded when another parent is indexed
+	private final ConcurrentMap<ClassEntry, Set<ClassEntry>> ancestorCache = new ConcurrentHashMap<>();
+	private final ConcurrentMap<ClassEntry, Set<ClassEntry>> descendantCache = new ConcurrentHashMap<>();
+
 	public InheritanceIndex(EntryIndex entryIndex) {
 		this.entryIndex = entryIndex;
 	}
@@ -58,6 +65,32 @@ public class InheritanceIndex implements JarIndexer, InheritanceIndexView {
 		classParents.computeIfAbsent(childEntry, k -> new ArrayList<>()).add(parentEntry);
 
 		JarIndex.synchronizedAdd(classChildren, parentEntry, childEntry);
+
+		if (!ancestorCache.isEmpty() || !descendantCache.isEmpty()) {
+			ancestorCache.clear();
+			descendantCache.clear();
+		}
+	}
+
+	void write(IndexCacheOutput out) throws IOException {
+		out.writeVarInt(classParents.size());
+
+		for (Map.Entry<ClassEntry, List<ClassEntry>> entry : classParents.entrySet()) {
+			out.writeEntry(entry.getKey());
+			out.writeEntries(entry.getValue());
+		}
+	}
+
+	void read(IndexCacheInput in) throws IOException {
+		int size = in.readVarInt();
+
+		for (int i = 0; i < size; i++) {
+			ClassEntry childEntry = in.readEntry(ClassEntry.class);
+
+			for (ClassEntry parentEntry : in.readEntries(ClassEntry.class)) {
+				indexParent(childEntry, parentEntry);
+			}
+		}
 	}
 
 	public Collection<ClassEntry> getParents(ClassEntry classEntry) {
@@ -78,38 +111,37 @@ public class InheritanceIndex implements JarIndexer, InheritanceIndexView {
 		return getChildren((ClassEntry) entry);
 	}
 
+	/**
+	 * Returns all classes that transitively extend or implement a class. The result is computed once per class
+	 * and can't be modified.
+	 */
 	public Collection<ClassEntry> getDescendants(ClassEntry classEntry) {
-		Collection<ClassEntry> descendants = new HashSet<>();
-
-		LinkedList<ClassEntry> descendantQueue = new LinkedList<>();
-		descendantQueue.push(classEntry);
-
-		while (!descendantQueue.isEmpty()) {
-			ClassEntry descendant = descendantQueue.pop();
-			Collection<ClassEntry> children = getChildren(descendant);
-
-			children.forEach(descendantQueue::push);
-			descendants.addAll(children);
-		}
-
-		return descendants;
+		return descendantCache.computeIfAbsent(classEntry, entry -> collectTransitive(entry, this::getChildren));
 	}
 
+	/**
+	 * Returns all classes that a class transitively extends or implements. The result is computed once per class
+	 * and can't be modified, so checking whether a class is a subtype of another is a single lookup.
+	 */
 	public Set<ClassEntry> getAncestors(ClassEntry classEntry) {
-		Set<ClassEntry> ancestors = new HashSet<>();
+		return ancestorCache.computeIfAbsent(classEntry, entry -> collectTransitive(entry, this::getParents));
+	}
 
-		LinkedList<ClassEntry> ancestorQueue = new LinkedList<>();
-		ancestorQueue.push(classEntry);
+	private static Set<ClassEntry> collectTransitive(ClassEntry classEntry, Function<ClassEntry, Collection<ClassEntry>> edges) {
+		Set<ClassEntry> result = new HashSet<>();
 
-		while (!ancestorQueue.isEmpty()) {
-			ClassEntry ancestor = ancestorQueue.pop();
-			Collection<ClassEntry> parents = getParents(ancestor);
+		ArrayDeque<ClassEntry> queue = new ArrayDeque<>();
+		queue.push(classEntry);
 
-			parents.forEach(ancestorQueue::push);
-			ancestors.addAll(parents);
+		while (!queue.isEmpty()) {
+			for (ClassEntry next : edges.apply(queue.pop())) {
+				if (result.add(next)) {
+					queue.push(next);
+				}
+			}
 		}
 
-		return ancestors;
+		return Collections.unmodifiableSet(result);
 	}
 
 	public Relation computeClassRelation(ClassEntry classEntry, ClassEntry potentialAncestor) {
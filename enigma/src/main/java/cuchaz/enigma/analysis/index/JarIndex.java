@@ -11,6 +11,7 @@
 
 package cuchaz.enigma.analysis.index;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -20,6 +21,9 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+
 import cuchaz.enigma.Enigma;
 import cuchaz.enigma.ProgressListener;
 import cuchaz.enigma.analysis.ReferenceTargetType;
@@ -40,72 +44,187 @@ import cuchaz.enigma.translation.representation.entry.ParentedEntry;
 import cuchaz.enigma.utils.I18n;
 
 public class JarIndex implements JarIndexer, JarIndexView {
+	private static final boolean PRINT_TIMINGS = Boolean.getBoolean("enigma.printIndexTimings");
+
 	private final Set<String> indexedClasses = new HashSet<>();
+	private final EntryPool entryPool;
 	private final EntryIndex entryIndex;
 	private final InheritanceIndex inheritanceIndex;
 	private final ReferenceIndex referenceIndex;
 	private final BridgeMethodIndex bridgeMethodIndex;
 	private final PackageVisibilityIndex packageVisibilityIndex;
-	private final EntryResolver entryResolver;
+	private final MethodEquivalenceIndex methodEquivalenceIndex;
+	private final IndexEntryResolver entryResolver;
 
 	private final Collection<JarIndexer> indexers;
 
 	private final ConcurrentMap<ClassEntry, List<ParentedEntry<?>>> childrenByClass;
 
-	public JarIndex(EntryIndex entryIndex, InheritanceIndex inheritanceIndex, ReferenceIndex referenceIndex, BridgeMethodIndex bridgeMethodIndex, PackageVisibilityIndex packageVisibilityIndex) {
+	public JarIndex(EntryPool entryPool, EntryIndex entryIndex, InheritanceIndex inheritanceIndex, ReferenceIndex referenceIndex, BridgeMethodIndex bridgeMethodIndex, PackageVisibilityIndex packageVisibilityIndex, MethodEquivalenceIndex methodEquivalenceIndex) {
+		this.entryPool = entryPool;
 		this.entryIndex = entryIndex;
 		this.inheritanceIndex = inheritanceIndex;
 		this.referenceIndex = referenceIndex;
 		this.bridgeMethodIndex = bridgeMethodIndex;
 		this.packageVisibilityIndex = packageVisibilityIndex;
-		this.indexers = List.of(entryIndex, inheritanceIndex, referenceIndex, bridgeMethodIndex, packageVisibilityIndex);
+		this.methodEquivalenceIndex = methodEquivalenceIndex;
+		// the method equivalence index is processed last, as it resolves entries through all other indexes
+		this.indexers = List.of(entryIndex, inheritanceIndex, referenceIndex, bridgeMethodIndex, packageVisibilityIndex, methodEquivalenceIndex);
 		this.entryResolver = new IndexEntryResolver(this);
 		this.childrenByClass = new ConcurrentHashMap<>();
 	}
 
+	@Deprecated // the indexes don't share their entries, use the constructor taking the entry pool
+	public JarIndex(EntryIndex entryIndex, InheritanceIndex inheritanceIndex, ReferenceIndex referenceIndex, BridgeMethodIndex bridgeMethodIndex, PackageVisibilityIndex packageVisibilityIndex) {
+		this(new EntryPool(), entryIndex, inheritanceIndex, referenceIndex, bridgeMethodIndex, packageVisibilityIndex, new MethodEquivalenceIndex(entryIndex));
+	}
+
 	public static JarIndex empty() {
+		EntryPool entryPool = new EntryPool();
 		EntryIndex entryIndex = new EntryIndex();
 		InheritanceIndex inheritanceIndex = new InheritanceIndex(entryIndex);
-		ReferenceIndex referenceIndex = new ReferenceIndex();
+		ReferenceIndex referenceIndex = new ReferenceIndex(entryPool);
 		BridgeMethodIndex bridgeMethodIndex = new BridgeMethodIndex(entryIndex, inheritanceIndex, referenceIndex);
 		PackageVisibilityIndex packageVisibilityIndex = new PackageVisibilityIndex();
-		return new JarIndex(entryIndex, inheritanceIndex, referenceIndex, bridgeMethodIndex, packageVisibilityIndex);
+		MethodEquivalenceIndex methodEquivalenceIndex = new MethodEquivalenceIndex(entryIndex);
+		return new JarIndex(entryPool, entryIndex, inheritanceIndex, referenceIndex, bridgeMethodIndex, packageVisibilityIndex, methodEquivalenceIndex);
 	}
 
 	public ClassProvider indexJar(Set<String> classNames, ClassProvider classProvider, ProgressListener progress) {
+		return indexJar(classNames, classProvider, null, progress);
+	}
+
+	/**
+	 * Indexes the given classes. If {@code records} are given, the contributions of classes that are unchanged
+	 * since the records were made are replayed instead of visiting the classes again, and the contributions of
+	 * all other classes are recorded.
+	 */
+	public ClassProvider indexJar(Set<String> classNames, ClassProvider classProvider, @Nullable ClassIndexRecords records, ProgressListener progress) {
+		// resolutions memoized before would not include the new classes
+		entryResolver.setCaching(false);
 		indexedClasses.addAll(classNames);
 		progress.init(4, I18n.translate("progress.jar.indexing"));
 
 		progress.step(1, I18n.translate("progress.jar.indexing.entries"));
+		long time = System.nanoTime();
 
 		classNames.parallelStream().forEach(className -> {
-			classProvider.get(className).accept(new IndexClassVisitor(this, Enigma.ASM_VERSION));
+			if (records != null && records.isUnchanged(className)) {
+				records.get(className).replayEntries(this);
+				return;
+			}
+
+			ClassIndexRecord record = records != null ? records.create(className) : null;
+
+			if (record != null) {
+				IndexClassVisitor visitor = new IndexClassVisitor(record, entryPool, Enigma.ASM_VERSION);
+				classProvider.accept(className, visitor);
+				record.setComputedFrames((visitor.getClassVersion() & 0xffff) < Opcodes.V1_7);
+				record.replayEntries(this);
+			} else {
+				classProvider.accept(className, new IndexClassVisitor(this, entryPool, Enigma.ASM_VERSION));
+			}
 		});
 
-		ClassProvider classProviderWithFrames = new CachingClassProvider(new AddFramesIfNecessaryClassProvider(classProvider, entryIndex));
+		time = printTime("entries", time);
+		ClassProvider classProviderWithFrames = createClassProviderWithFrames(classProvider);
 
 		progress.step(2, I18n.translate("progress.jar.indexing.references"));
 
 		classNames.parallelStream().forEach(className -> {
+			ClassIndexRecord record = records != null ? records.get(className) : null;
+
+			if (record != null && records.isUnchanged(className)) {
+				record.replayReferences(this);
+				return;
+			}
+
 			try {
-				classProviderWithFrames.get(className).accept(new IndexReferenceVisitor(this, Enigma.ASM_VERSION));
+				classProviderWithFrames.accept(className, new IndexReferenceVisitor(record != null ? record : this, entryPool, Enigma.ASM_VERSION));
 			} catch (Exception e) {
 				throw new RuntimeException("Exception while indexing class: " + className, e);
 			}
+
+			if (record != null) {
+				record.replayReferences(this);
+			}
 		});
 
+		referenceIndex.mergeBuffers();
+		time = printTime("references", time);
+
+		if (records != null) {
+			records.getRecords().keySet().retainAll(classNames);
+		}
+
 		progress.step(3, I18n.translate("progress.jar.indexing.methods"));
 		bridgeMethodIndex.findBridgeMethods();
+		printTime("bridge methods", time);
 
 		progress.step(4, I18n.translate("progress.jar.indexing.process"));
 		processIndex(this);
+		entryResolver.setCaching(true);
 
 		return classProviderWithFrames;
 	}
 
+	/**
+	 * Wraps the given class provider so that classes compiled without stack map frames get them computed
+	 * using this index, as the reference pass and {@link cuchaz.enigma.api.service.JarIndexerService}s expect.
+	 */
+	public ClassProvider createClassProviderWithFrames(ClassProvider classProvider) {
+		return new CachingClassProvider(new AddFramesIfNecessaryClassProvider(classProvider, entryIndex));
+	}
+
+	void write(IndexCacheOutput out) throws IOException {
+		out.writeStrings(indexedClasses);
+		entryIndex.write(out);
+		inheritanceIndex.write(out);
+		referenceIndex.write(out);
+		bridgeMethodIndex.write(out);
+		packageVisibilityIndex.write(out);
+		methodEquivalenceIndex.write(out);
+		out.writeMultimap(childrenByClass, IndexCacheOutput::writeEntry);
+	}
+
+	void read(IndexCacheInput in) throws IOException {
+		entryResolver.setCaching(false);
+		indexedClasses.addAll(in.readStrings());
+		entryIndex.read(in);
+		inheritanceIndex.read(in);
+		referenceIndex.read(in);
+		bridgeMethodIndex.read(in);
+		packageVisibilityIndex.read(in);
+		methodEquivalenceIndex.read(in);
+		in.readMultimap(childrenByClass, ClassEntry.class, input -> (ParentedEntry<?>) input.readEntry(ParentedEntry.class));
+		entryResolver.setCaching(true);
+	}
+
 	@Override
 	public void processIndex(JarIndex index) {
-		indexers.forEach(indexer -> indexer.processIndex(index));
+		for (JarIndexer indexer : indexers) {
+			long time = System.nanoTime();
+			indexer.processIndex(index);
+			printTime("processing " + indexer.getClass().getSimpleName(), time);
+		}
+
+		// the canonical entries are only needed while indexing, the indexes keep the instances they use
+		entryPool.clear();
+	}
+
+	/**
+	 * Prints how long an indexing step took if the {@code enigma.printIndexTimings} system property is set.
+	 *
+	 * @return the current time, to measure the next step from
+	 */
+	private static long printTime(String step, long startTime) {
+		long time = System.nanoTime();
+
+		if (PRINT_TIMINGS) {
+			System.out.printf("Indexing %s took %d ms%n", step, (time - startTime) / 1_000_000);
+		}
+
+		return time;
 	}
 
 	@Override
@@ -199,6 +318,10 @@ public class JarIndex implements JarIndexer, JarIndexView {
 		return this.inheritanceIndex;
 	}
 
+	public EntryPool getEntryPool() {
+		return entryPool;
+	}
+
 	@Override
 	public ReferenceIndex getReferenceIndex() {
 		return referenceIndex;
@@ -213,6 +336,11 @@ public class JarIndex implements JarIndexer, JarIndexView {
 		return packageVisibilityIndex;
 	}
 
+	@Override
+	public MethodEquivalenceIndex getMethodEquivalenceIndex() {
+		return methodEquivalenceIndex;
+	}
+
 	public EntryResolver getEntryResolver() {
 		return entryResolver;
 	}
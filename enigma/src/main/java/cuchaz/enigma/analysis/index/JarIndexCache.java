@@ -0,0 +1,324 @@
+package cuchaz.enigma.analysis.index;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+
+import cuchaz.enigma.Enigma;
+import cuchaz.enigma.config.ConfigPaths;
+import cuchaz.enigma.utils.Utils;
+
+/**
+ * Stores fully processed {@link JarIndex}es on disk, so that reopening an unchanged jar doesn't
+ * need to visit any bytecode.
+ *
+ * <p>Cache files are keyed by the checksum of the input jars and their libraries, and are
+ * versioned: a file written by a different format version or Enigma version is simply ignored.
+ *
+ * <p>Next to the processed indexes, the cache keeps the latest {@link ClassIndexRecords} for each set of
+ * input jar paths, so that a changed jar only needs its changed classes to be visited again.
+ *
+ * <p>Files are read into memory rather than mapped, so that they can be replaced while a project is open on every
+ * platform. When the cache grows past its maximum size, the least recently used files are deleted.
+ */
+public class JarIndexCache {
+	private static final int MAGIC = 0x456E4958; // "EnIX"
+	private static final int FORMAT_VERSION = 2;
+	private static final String FILE_EXTENSION = ".idx";
+	private static final String RECORDS_FILE_EXTENSION = ".classes";
+
+	/**
+	 * The default maximum size of the cache in bytes, which can be changed with the {@code enigma.indexCacheMaxSize}
+	 * system property.
+	 */
+	public static final long DEFAULT_MAX_SIZE = Long.getLong("enigma.indexCacheMaxSize", 1L << 30);
+
+	private final Path directory;
+	private final long maxSize;
+
+	public JarIndexCache(Path directory) {
+		this(directory, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize the size in bytes above which the least recently used cache files are deleted
+	 */
+	public JarIndexCache(Path directory, long maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Cache size cannot be negative: " + maxSize);
+		}
+
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the cache in the default location, or {@code null} if it was disabled with
+	 * {@code -Denigma.indexCache=false}. The location can be changed with {@code -Denigma.indexCacheDir}.
+	 */
+	@Nullable
+	public static JarIndexCache createDefault() {
+		if (!Boolean.parseBoolean(System.getProperty("enigma.indexCache", "true"))) {
+			return null;
+		}
+
+		String directory = System.getProperty("enigma.indexCacheDir");
+
+		if (directory != null) {
+			return new JarIndexCache(Path.of(directory));
+		}
+
+		return new JarIndexCache(ConfigPaths.getCachePathRoot().resolve("enigma").resolve("index"));
+	}
+
+	/**
+	 * Computes the part of the cache key that doesn't depend on the input jars.
+	 *
+	 * @param librariesChecksum the checksum of the library jars, which influence the computed stack map frames, as
+	 * computed by {@link cuchaz.enigma.utils.JarChecksums}, or {@code null} if there are none
+	 */
+	public static byte[] computeLibrariesKey(@Nullable byte[] librariesChecksum) {
+		MessageDigest digest = createDigest();
+
+		if (librariesChecksum != null) {
+			digest.update(librariesChecksum);
+		}
+
+		digest.update(Enigma.VERSION.getBytes(StandardCharsets.UTF_8));
+		return digest.digest();
+	}
+
+	/**
+	 * Computes the cache key for a project.
+	 *
+	 * @param jarChecksum the checksum of the input jars, as computed by {@link cuchaz.enigma.utils.JarChecksums}
+	 * @param librariesKey the key computed by {@link #computeLibrariesKey(byte[])}
+	 */
+	public static byte[] computeKey(byte[] jarChecksum, byte[] librariesKey) {
+		MessageDigest digest = createDigest();
+		digest.update(jarChecksum);
+		digest.update(librariesKey);
+		return digest.digest();
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// Algorithm guaranteed to be supported
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Loads the index stored for the given key.
+	 *
+	 * @return the index, or {@code null} if there is no usable cache file for this key
+	 */
+	@Nullable
+	public JarIndex load(byte[] key) {
+		Path path = getPath(key);
+
+		try {
+			IndexCacheInput in = read(path);
+
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !Arrays.equals(in.readBytes(), key)) {
+				return null;
+			}
+
+			JarIndex index = JarIndex.empty();
+			index.read(in);
+			return index;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to read cached jar index " + path + ", reindexing");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a processed index under the given key. Failures are reported but not thrown, since the cache is optional.
+	 */
+	public void save(byte[] key, JarIndex index) {
+		write(getPath(key), key, index::write);
+	}
+
+	/**
+	 * Loads the class records last stored for the given jars, so that they can be indexed incrementally.
+	 * Records made with different libraries are discarded.
+	 *
+	 * @param classHashes the current hashes of the classes in the jars, as computed by {@link Utils#zipClassChecksums(Path...)}
+	 * @return the records, which are empty if there is no usable cache file for these jars
+	 */
+	public ClassIndexRecords loadRecords(List<Path> jars, byte[] librariesKey, Map<String, byte[]> classHashes) {
+		Path path = getRecordsPath(jars);
+
+		try {
+			IndexCacheInput in = read(path);
+
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !Arrays.equals(in.readBytes(), librariesKey)) {
+				return new ClassIndexRecords(classHashes);
+			}
+
+			int size = in.readVarInt();
+			Map<String, ClassIndexRecord> records = new HashMap<>(size);
+
+			for (int i = 0; i < size; i++) {
+				records.put(in.readString(), ClassIndexRecord.read(in));
+			}
+
+			return new ClassIndexRecords(classHashes, records);
+		} catch (NoSuchFileException e) {
+			return new ClassIndexRecords(classHashes);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to read cached class records " + path + ", reindexing all classes");
+			e.printStackTrace();
+			return new ClassIndexRecords(classHashes);
+		}
+	}
+
+	/**
+	 * Stores the class records for the given jars, replacing the previous ones. Failures are reported but not thrown.
+	 */
+	public void saveRecords(List<Path> jars, byte[] librariesKey, ClassIndexRecords records) {
+		write(getRecordsPath(jars), librariesKey, out -> {
+			Map<String, ClassIndexRecord> recordMap = records.getRecords();
+			out.writeVarInt(recordMap.size());
+
+			for (Map.Entry<String, ClassIndexRecord> entry : recordMap.entrySet()) {
+				out.writeString(entry.getKey());
+				entry.getValue().write(out);
+			}
+		});
+	}
+
+	private static IndexCacheInput read(Path path) throws IOException {
+		IndexCacheInput in = new IndexCacheInput(ByteBuffer.wrap(Files.readAllBytes(path)));
+
+		try {
+			// the modification time marks the file as recently used, see evict
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException e) {
+			// only affects which files are evicted first
+		}
+
+		return in;
+	}
+
+	private void write(Path path, byte[] key, CacheWriter writer) {
+		try {
+			Files.createDirectories(directory);
+			Path tempPath = Files.createTempFile(directory, "index", ".tmp");
+
+			try {
+				try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(tempPath))) {
+					IndexCacheOutput out = new IndexCacheOutput(stream);
+					out.writeInt(MAGIC);
+					out.writeInt(FORMAT_VERSION);
+					out.writeBytes(key);
+					writer.write(out);
+					out.flush();
+				}
+
+				// write to a temporary file first so that concurrent readers never see a partial file
+				Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tempPath);
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to write index cache file " + path);
+			e.printStackTrace();
+			return;
+		}
+
+		evict(path);
+	}
+
+	/**
+	 * Deletes the least recently used cache files until the cache fits in its maximum size, never deleting the file
+	 * that was just written.
+	 */
+	private void evict(Path written) {
+		List<CacheFile> files = new ArrayList<>();
+
+		try (Stream<Path> paths = Files.list(directory)) {
+			paths.filter(path -> {
+				String name = path.getFileName().toString();
+				return name.endsWith(FILE_EXTENSION) || name.endsWith(RECORDS_FILE_EXTENSION);
+			}).forEach(path -> {
+				try {
+					files.add(new CacheFile(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+				} catch (NoSuchFileException e) {
+					// deleted concurrently
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (IOException | UncheckedIOException e) {
+			System.err.println("Failed to list index cache directory " + directory);
+			e.printStackTrace();
+			return;
+		}
+
+		files.sort(Comparator.comparingLong(CacheFile::lastModified).reversed());
+		long size = 0;
+
+		for (CacheFile file : files) {
+			size += file.size;
+
+			if (size > maxSize && !file.path.equals(written)) {
+				try {
+					Files.deleteIfExists(file.path);
+				} catch (IOException e) {
+					System.err.println("Failed to evict index cache file " + file.path);
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private Path getRecordsPath(List<Path> jars) {
+		MessageDigest digest = createDigest();
+
+		for (Path jar : jars) {
+			digest.update(jar.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+
+		return directory.resolve(HexFormat.of().formatHex(digest.digest()) + RECORDS_FILE_EXTENSION);
+	}
+
+	private Path getPath(byte[] key) {
+		return directory.resolve(HexFormat.of().formatHex(key) + FILE_EXTENSION);
+	}
+
+	private record CacheFile(Path path, long size, long lastModified) {
+	}
+
+	@FunctionalInterface
+	private interface CacheWriter {
+		void write(IndexCacheOutput out) throws IOException;
+	}
+}
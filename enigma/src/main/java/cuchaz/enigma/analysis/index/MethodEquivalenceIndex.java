@@ -0,0 +1,169 @@
+package cuchaz.enigma.analysis.index;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.Nullable;
+
+import cuchaz.enigma.api.view.entry.MethodEntryView;
+import cuchaz.enigma.api.view.index.MethodEquivalenceIndexView;
+import cuchaz.enigma.translation.mapping.EntryResolver;
+import cuchaz.enigma.translation.mapping.ResolutionStrategy;
+import cuchaz.enigma.translation.representation.AccessFlags;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+
+/**
+ * Groups the methods which have to share a name because they override each other, directly or through bridge
+ * methods and interface implementations. The groups are built once the rest of the index is processed, so that
+ * looking up the equivalent methods of a method doesn't walk the hierarchy again.
+ */
+public class MethodEquivalenceIndex implements JarIndexer, MethodEquivalenceIndexView {
+	private final EntryIndex entryIndex;
+
+	// only groups of more than one method are stored
+	private final Map<MethodEntry, Set<MethodEntry>> groups = new HashMap<>();
+	// overridable methods whose equivalent methods could not be resolved
+	private final Set<MethodEntry> unresolvedMethods = new HashSet<>();
+
+	public MethodEquivalenceIndex(EntryIndex entryIndex) {
+		this.entryIndex = entryIndex;
+	}
+
+	@Override
+	public void processIndex(JarIndex index) {
+		EntryResolver resolver = index.getEntryResolver();
+		InheritanceIndex inheritanceIndex = index.getInheritanceIndex();
+		BridgeMethodIndex bridgeMethodIndex = index.getBridgeMethodIndex();
+		Collection<MethodEntry> methods = entryIndex.getMethods();
+		DisjointSets<MethodEntry> methodSets = new DisjointSets<>(methods);
+		Set<MethodEntry> missingBridges = ConcurrentHashMap.newKeySet();
+
+		// each method is only joined with the methods it directly overrides and the method it bridges, and the
+		// disjoint sets join those with the methods they override in turn
+		methods.parallelStream().filter(this::canImplement).forEach(method -> {
+			if (!canOverride(method)) {
+				// a final method only implements the roots of the methods it overrides, not the methods they bridge
+				for (MethodEntry rootMethod : resolver.resolveEntry(method, ResolutionStrategy.RESOLVE_ROOT)) {
+					if (!rootMethod.equals(method) && rootMethod.getDesc().equals(method.getDesc()) && canImplement(rootMethod)) {
+						methodSets.union(method, rootMethod);
+					}
+				}
+
+				return;
+			}
+
+			for (ClassEntry parentClass : inheritanceIndex.getParents(method.getParent())) {
+				for (MethodEntry overriddenMethod : resolver.resolveEntry(method.withParent(parentClass), ResolutionStrategy.RESOLVE_CLOSEST)) {
+					if (canImplement(overriddenMethod)) {
+						methodSets.union(method, overriddenMethod);
+					}
+				}
+			}
+
+			MethodEntry bridgeMethod = bridgeMethodIndex.getBridgeFromSpecialized(method);
+
+			if (bridgeMethod != null) {
+				if (entryIndex.hasMethod(bridgeMethod)) {
+					methodSets.union(method, bridgeMethod);
+				} else {
+					missingBridges.add(method);
+				}
+			}
+		});
+
+		groups.clear();
+		unresolvedMethods.clear();
+
+		for (Set<MethodEntry> group : methodSets.getSets()) {
+			// the equivalent methods of a group with a missing bridged method can't be resolved, leave it to the
+			// resolver to report
+			if (group.stream().anyMatch(missingBridges::contains)) {
+				group.stream().filter(this::canOverride).forEach(unresolvedMethods::add);
+			} else {
+				addGroup(group);
+			}
+		}
+	}
+
+	private void addGroup(Set<MethodEntry> group) {
+		if (group.size() > 1) {
+			Set<MethodEntry> unmodifiableGroup = Collections.unmodifiableSet(group);
+
+			for (MethodEntry method : group) {
+				groups.put(method, unmodifiableGroup);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a method can override or implement another method, which unlike {@link #canOverride} includes
+	 * final methods.
+	 */
+	private boolean canImplement(MethodEntry method) {
+		AccessFlags access = entryIndex.getMethodAccess(method);
+		return access != null && !method.isConstructor() && !access.isPrivate() && !access.isStatic();
+	}
+
+	private boolean canOverride(MethodEntry method) {
+		AccessFlags access = entryIndex.getMethodAccess(method);
+		return access != null && !method.isConstructor() && !access.isPrivate() && !access.isStatic() && !access.isFinal();
+	}
+
+	void write(IndexCacheOutput out) throws IOException {
+		Set<Set<MethodEntry>> distinctGroups = Collections.newSetFromMap(new IdentityHashMap<>());
+		distinctGroups.addAll(groups.values());
+		out.writeVarInt(distinctGroups.size());
+
+		for (Set<MethodEntry> group : distinctGroups) {
+			out.writeEntries(group);
+		}
+
+		out.writeEntries(unresolvedMethods);
+	}
+
+	void read(IndexCacheInput in) throws IOException {
+		int size = in.readVarInt();
+
+		for (int i = 0; i < size; i++) {
+			addGroup(new HashSet<>(in.readEntries(MethodEntry.class)));
+		}
+
+		unresolvedMethods.addAll(in.readEntries(MethodEntry.class));
+	}
+
+	/**
+	 * Returns the methods which have to share a name with an overridable method, including itself.
+	 *
+	 * @return the equivalent methods, or {@code null} if the method isn't indexed or its equivalent methods
+	 * could not be resolved
+	 */
+	@Nullable
+	public Set<MethodEntry> getEquivalentMethods(MethodEntry method) {
+		Set<MethodEntry> group = groups.get(method);
+
+		if (group != null) {
+			return group;
+		}
+
+		if (!entryIndex.hasMethod(method) || unresolvedMethods.contains(method)) {
+			return null;
+		}
+
+		return Set.of(method);
+	}
+
+	@Override
+	public Collection<? extends MethodEntryView> getEquivalentMethods(MethodEntryView method) {
+		Set<MethodEntry> equivalentMethods = getEquivalentMethods((MethodEntry) method);
+		return equivalentMethods != null ? equivalentMethods : List.of((MethodEntry) method);
+	}
+}
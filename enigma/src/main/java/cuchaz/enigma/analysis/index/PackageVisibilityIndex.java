@@ -1,15 +1,13 @@
 package cuchaz.enigma.analysis.index;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import cuchaz.enigma.analysis.EntryReference;
 import cuchaz.enigma.analysis.ReferenceTargetType;
@@ -45,40 +43,17 @@ public class PackageVisibilityIndex implements JarIndexer {
 		return true;
 	}
 
-	private final ConcurrentMap<ClassEntry, List<ClassEntry>> connections = new ConcurrentHashMap<>();
 	private final List<Set<ClassEntry>> partitions = new ArrayList<>();
 	private final Map<ClassEntry, Set<ClassEntry>> classPartitions = new HashMap<>();
 
-	private void addConnection(ClassEntry classA, ClassEntry classB) {
-		if (classA != classB) {
-			JarIndex.synchronizedAdd(connections, classA, classB);
-			JarIndex.synchronizedAdd(connections, classB, classA);
-		}
-	}
-
-	private void buildPartition(Set<ClassEntry> unassignedClasses, Set<ClassEntry> partition, ClassEntry member) {
-		List<ClassEntry> memberConnections = connections.get(member);
-
-		if (memberConnections == null) {
-			return;
-		}
-
-		for (ClassEntry connected : memberConnections) {
-			if (unassignedClasses.remove(connected)) {
-				partition.add(connected);
-				buildPartition(unassignedClasses, partition, connected);
-			}
-		}
-	}
-
-	private void addConnections(EntryIndex entryIndex, ReferenceIndex referenceIndex, InheritanceIndex inheritanceIndex) {
+	private void addConnections(EntryIndex entryIndex, ReferenceIndex referenceIndex, InheritanceIndex inheritanceIndex, DisjointSets<ClassEntry> classSets) {
 		entryIndex.getFields().parallelStream().forEach(entry -> {
 			AccessFlags entryAcc = entryIndex.getFieldAccess(entry);
 
 			if (!entryAcc.isPublic() && !entryAcc.isPrivate()) {
 				for (EntryReference<FieldEntry, MethodDefEntry> ref : referenceIndex.getReferencesToField(entry)) {
 					if (requiresSamePackage(entryAcc, ref, inheritanceIndex)) {
-						addConnection(ref.entry.getContainingClass(), ref.context.getContainingClass());
+						classSets.union(ref.entry.getContainingClass(), ref.context.getContainingClass());
 					}
 				}
 			}
@@ -90,7 +65,7 @@ public class PackageVisibilityIndex implements JarIndexer {
 			if (!entryAcc.isPublic() && !entryAcc.isPrivate()) {
 				for (EntryReference<MethodEntry, MethodDefEntry> ref : referenceIndex.getReferencesToMethod(entry)) {
 					if (requiresSamePackage(entryAcc, ref, inheritanceIndex)) {
-						addConnection(ref.entry.getContainingClass(), ref.context.getContainingClass());
+						classSets.union(ref.entry.getContainingClass(), ref.context.getContainingClass());
 					}
 				}
 			}
@@ -102,13 +77,13 @@ public class PackageVisibilityIndex implements JarIndexer {
 			if (!entryAcc.isPublic() && !entryAcc.isPrivate()) {
 				for (EntryReference<ClassEntry, FieldDefEntry> ref : referenceIndex.getFieldTypeReferencesToClass(entry)) {
 					if (requiresSamePackage(entryAcc, ref, inheritanceIndex)) {
-						addConnection(ref.entry.getContainingClass(), ref.context.getContainingClass());
+						classSets.union(ref.entry.getContainingClass(), ref.context.getContainingClass());
 					}
 				}
 
 				for (EntryReference<ClassEntry, MethodDefEntry> ref : referenceIndex.getMethodTypeReferencesToClass(entry)) {
 					if (requiresSamePackage(entryAcc, ref, inheritanceIndex)) {
-						addConnection(ref.entry.getContainingClass(), ref.context.getContainingClass());
+						classSets.union(ref.entry.getContainingClass(), ref.context.getContainingClass());
 					}
 				}
 			}
@@ -117,29 +92,41 @@ public class PackageVisibilityIndex implements JarIndexer {
 				AccessFlags parentAcc = entryIndex.getClassAccess(parent);
 
 				if (parentAcc != null && !parentAcc.isPublic() && !parentAcc.isPrivate()) {
-					addConnection(entry, parent);
+					classSets.union(entry, parent);
 				}
 			}
 
 			ClassEntry outerClass = entry.getOuterClass();
 
 			if (outerClass != null) {
-				addConnection(entry, outerClass);
+				classSets.union(entry, outerClass);
 			}
 		});
 	}
 
-	private void addPartitions(EntryIndex entryIndex) {
-		Set<ClassEntry> unassignedClasses = new HashSet<>(entryIndex.getClasses());
+	private void addPartitions(DisjointSets<ClassEntry> classSets) {
+		for (Set<ClassEntry> partition : classSets.getSets()) {
+			partitions.add(partition);
+
+			for (ClassEntry entry : partition) {
+				classPartitions.put(entry, partition);
+			}
+		}
+	}
+
+	void write(IndexCacheOutput out) throws IOException {
+		out.writeVarInt(partitions.size());
+
+		for (Set<ClassEntry> partition : partitions) {
+			out.writeEntries(partition);
+		}
+	}
 
-		while (!unassignedClasses.isEmpty()) {
-			Iterator<ClassEntry> iterator = unassignedClasses.iterator();
-			ClassEntry initialEntry = iterator.next();
-			iterator.remove();
+	void read(IndexCacheInput in) throws IOException {
+		int size = in.readVarInt();
 
-			HashSet<ClassEntry> partition = new HashSet<>();
-			partition.add(initialEntry);
-			buildPartition(unassignedClasses, partition, initialEntry);
+		for (int i = 0; i < size; i++) {
+			Set<ClassEntry> partition = new HashSet<>(in.readEntries(ClassEntry.class));
 			partitions.add(partition);
 
 			for (ClassEntry entry : partition) {
@@ -161,7 +148,8 @@ public class PackageVisibilityIndex implements JarIndexer {
 		EntryIndex entryIndex = index.getEntryIndex();
 		ReferenceIndex referenceIndex = index.getReferenceIndex();
 		InheritanceIndex inheritanceIndex = index.getInheritanceIndex();
-		addConnections(entryIndex, referenceIndex, inheritanceIndex);
-		addPartitions(entryIndex);
+		DisjointSets<ClassEntry> classSets = new DisjointSets<>(entryIndex.getClasses());
+		addConnections(entryIndex, referenceIndex, inheritanceIndex, classSets);
+		addPartitions(classSets);
 	}
 }
@@ -1,10 +1,17 @@
 package cuchaz.enigma.analysis.index;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 import cuchaz.enigma.analysis.EntryReference;
 import cuchaz.enigma.analysis.ReferenceTargetType;
@@ -13,11 +20,13 @@ import cuchaz.enigma.api.view.entry.EntryReferenceView;
 import cuchaz.enigma.api.view.entry.FieldEntryView;
 import cuchaz.enigma.api.view.entry.MethodEntryView;
 import cuchaz.enigma.api.view.index.ReferenceIndexView;
+import cuchaz.enigma.translation.mapping.EntryResolver;
 import cuchaz.enigma.translation.mapping.ResolutionStrategy;
 import cuchaz.enigma.translation.representation.Lambda;
 import cuchaz.enigma.translation.representation.MethodDescriptor;
 import cuchaz.enigma.translation.representation.TypeDescriptor;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.DefEntry;
 import cuchaz.enigma.translation.representation.entry.Entry;
 import cuchaz.enigma.translation.representation.entry.FieldDefEntry;
 import cuchaz.enigma.translation.representation.entry.FieldEntry;
@@ -25,6 +34,8 @@ import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
 import cuchaz.enigma.translation.representation.entry.MethodEntry;
 
 public class ReferenceIndex implements JarIndexer, ReferenceIndexView {
+	private final EntryPool entryPool;
+
 	private ConcurrentMap<MethodEntry, List<MethodEntry>> methodReferences = new ConcurrentHashMap<>();
 
 	private ConcurrentMap<MethodEntry, List<EntryReference<MethodEntry, MethodDefEntry>>> referencesToMethods = new ConcurrentHashMap<>();
@@ -33,6 +44,30 @@ public class ReferenceIndex implements JarIndexer, ReferenceIndexView {
 	private ConcurrentMap<ClassEntry, List<EntryReference<ClassEntry, FieldDefEntry>>> fieldTypeReferences = new ConcurrentHashMap<>();
 	private ConcurrentMap<ClassEntry, List<EntryReference<ClassEntry, MethodDefEntry>>> methodTypeReferences = new ConcurrentHashMap<>();
 
+	// references are collected per thread without locking, and merged into the maps above once a pass is done.
+	// the buffers are owned by the index rather than by thread locals, so that pooled threads don't keep them alive
+	private final ConcurrentMap<Thread, ReferenceBuffer> buffers = new ConcurrentHashMap<>();
+
+	@Deprecated // the references don't share their entries with the other indexes, use the constructor taking the entry pool
+	public ReferenceIndex() {
+		this(new EntryPool());
+	}
+
+	public ReferenceIndex(EntryPool entryPool) {
+		this.entryPool = entryPool;
+	}
+
+	private ReferenceBuffer localBuffer() {
+		ReferenceBuffer buffer = buffers.get(Thread.currentThread());
+
+		if (buffer == null) {
+			buffer = new ReferenceBuffer();
+			buffers.put(Thread.currentThread(), buffer);
+		}
+
+		return buffer;
+	}
+
 	@Override
 	public void indexMethod(MethodDefEntry methodEntry) {
 		indexMethodDescriptor(methodEntry, methodEntry.getDesc());
@@ -48,8 +83,8 @@ public class ReferenceIndex implements JarIndexer, ReferenceIndexView {
 
 	private void indexMethodTypeDescriptor(MethodDefEntry method, TypeDescriptor typeDescriptor) {
 		if (typeDescriptor.isType()) {
-			ClassEntry referencedClass = typeDescriptor.getTypeEntry();
-			JarIndex.synchronizedAdd(methodTypeReferences, referencedClass, new EntryReference<>(referencedClass, referencedClass.getName(), method));
+			ClassEntry referencedClass = entryPool.intern(typeDescriptor.getTypeEntry());
+			add(localBuffer().methodTypeReferences, referencedClass, new EntryReference<>(referencedClass, referencedClass.getName(), method));
 		} else if (typeDescriptor.isArray()) {
 			indexMethodTypeDescriptor(method, typeDescriptor.getArrayType());
 		}
@@ -62,8 +97,8 @@ public class ReferenceIndex implements JarIndexer, ReferenceIndexView {
 
 	private void indexFieldTypeDescriptor(FieldDefEntry field, TypeDescriptor typeDescriptor) {
 		if (typeDescriptor.isType()) {
-			ClassEntry referencedClass = typeDescriptor.getTypeEntry();
-			JarIndex.synchronizedAdd(fieldTypeReferences, referencedClass, new EntryReference<>(referencedClass, referencedClass.getName(), field));
+			ClassEntry referencedClass = entryPool.intern(typeDescriptor.getTypeEntry());
+			add(localBuffer().fieldTypeReferences, referencedClass, new EntryReference<>(referencedClass, referencedClass.getName(), field));
 		} else if (typeDescriptor.isArray()) {
 			indexFieldTypeDescriptor(field, typeDescriptor.getArrayType());
 		}
@@ -71,23 +106,24 @@ public class ReferenceIndex implements JarIndexer, ReferenceIndexView {
 
 	@Override
 	public void indexClassReference(MethodDefEntry callerEntry, ClassEntry referencedEntry, ReferenceTargetType targetType) {
-		JarIndex.synchronizedAdd(referencesToClasses, referencedEntry, new EntryReference<>(referencedEntry, referencedEntry.getName(), callerEntry, targetType));
+		add(localBuffer().referencesToClasses, referencedEntry, new EntryReference<>(referencedEntry, referencedEntry.getName(), callerEntry, targetType));
 	}
 
 	@Override
 	public void indexMethodReference(MethodDefEntry callerEntry, MethodEntry referencedEntry, ReferenceTargetType targetType) {
-		JarIndex.synchronizedAdd(referencesToMethods, referencedEntry, new EntryReference<>(referencedEntry, referencedEntry.getName(), callerEntry, targetType));
-		JarIndex.synchronizedAdd(methodReferences, callerEntry, referencedEntry);
+		ReferenceBuffer buffer = localBuffer();
+		add(buffer.referencesToMethods, referencedEntry, new EntryReference<>(referencedEntry, referencedEntry.getName(), callerEntry, targetType));
+		add(buffer.methodReferences, callerEntry, referencedEntry);
 
 		if (referencedEntry.isConstructor()) {
 			ClassEntry referencedClass = referencedEntry.getParent();
-			JarIndex.synchronizedAdd(referencesToClasses, referencedClass, new EntryReference<>(referencedClass, referencedEntry.getName(), callerEntry, targetType));
+			add(buffer.referencesToClasses, referencedClass, new EntryReference<>(referencedClass, referencedEntry.getName(), callerEntry, targetType));
 		}
 	}
 
 	@Override
 	public void indexFieldReference(MethodDefEntry callerEntry, FieldEntry referencedEntry, ReferenceTargetType targetType) {
-		JarIndex.synchronizedAdd(referencesToFields, referencedEntry, new EntryReference<>(referencedEntry, referencedEntry.getName(), callerEntry, targetType));
+		add(localBuffer().referencesToFields, referencedEntry, new EntryReference<>(referencedEntry, referencedEntry.getName(), callerEntry, targetType));
 	}
 
 	@Override
@@ -103,46 +139,175 @@ public class ReferenceIndex implements JarIndexer, ReferenceIndexView {
 		indexMethodDescriptor(callerEntry, lambda.getInstantiatedMethodType());
 	}
 
+	private static <K, V> void add(Map<K, List<V>> map, K key, V value) {
+		map.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+	}
+
+	/**
+	 * Merges the references collected by all threads into the index. Must only be called once no thread
+	 * is indexing anymore, and is called automatically when processing the index.
+	 */
+	void mergeBuffers() {
+		List<ReferenceBuffer> collected = new ArrayList<>(buffers.values());
+		buffers.clear();
+
+		if (collected.isEmpty()) {
+			return;
+		}
+
+		Stream.<Runnable>of(
+				() -> merge(methodReferences, collected, buffer -> buffer.methodReferences),
+				() -> merge(referencesToMethods, collected, buffer -> buffer.referencesToMethods),
+				() -> merge(referencesToClasses, collected, buffer -> buffer.referencesToClasses),
+				() -> merge(referencesToFields, collected, buffer -> buffer.referencesToFields),
+				() -> merge(fieldTypeReferences, collected, buffer -> buffer.fieldTypeReferences),
+				() -> merge(methodTypeReferences, collected, buffer -> buffer.methodTypeReferences)
+		).parallel().forEach(Runnable::run);
+
+		// the lists now belong to the index, so the buffers must not be added to anymore
+		collected.forEach(ReferenceBuffer::clear);
+	}
+
+	private static <K, V> void merge(ConcurrentMap<K, List<V>> multimap, List<ReferenceBuffer> buffers, Function<ReferenceBuffer, Map<K, List<V>>> getter) {
+		for (ReferenceBuffer buffer : buffers) {
+			getter.apply(buffer).forEach((key, values) -> {
+				List<V> list = multimap.get(key);
+
+				if (list == null) {
+					multimap.put(key, values);
+				} else {
+					list.addAll(values);
+				}
+			});
+		}
+	}
+
 	@Override
 	public void processIndex(JarIndex index) {
-		methodReferences = remapReferences(index, methodReferences);
-		referencesToMethods = remapReferencesTo(index, referencesToMethods);
-		referencesToClasses = remapReferencesTo(index, referencesToClasses);
-		referencesToFields = remapReferencesTo(index, referencesToFields);
-		fieldTypeReferences = remapReferencesTo(index, fieldTypeReferences);
-		methodTypeReferences = remapReferencesTo(index, methodTypeReferences);
+		mergeBuffers();
+
+		ResolutionMemo memo = new ResolutionMemo(index.getEntryResolver(), entryPool);
+		methodReferences = remapMultimap(methodReferences, memo, memo::resolve);
+		referencesToMethods = remapMultimap(referencesToMethods, memo, memo::resolve);
+		referencesToClasses = remapMultimap(referencesToClasses, memo, memo::resolve);
+		referencesToFields = remapMultimap(referencesToFields, memo, memo::resolve);
+		fieldTypeReferences = remapMultimap(fieldTypeReferences, memo, memo::resolve);
+		methodTypeReferences = remapMultimap(methodTypeReferences, memo, memo::resolve);
+		entryPool.clear();
 	}
 
-	private <K extends Entry<?>, V extends Entry<?>> ConcurrentMap<K, List<V>> remapReferences(JarIndex index, ConcurrentMap<K, List<V>> multimap) {
-		ConcurrentMap<K, List<V>> resolved = new ConcurrentHashMap<>();
+	/**
+	 * Resolves every key and value of the multimap to the closest entry that is actually declared. Each key
+	 * is resolved once, and its values are rewritten into a list of the exact size in the same pass.
+	 */
+	private static <K extends Entry<?>, V> ConcurrentMap<K, List<V>> remapMultimap(ConcurrentMap<K, List<V>> multimap, ResolutionMemo memo, UnaryOperator<V> valueRemapper) {
+		ConcurrentMap<K, List<V>> resolved = new ConcurrentHashMap<>(multimap.size());
 
 		multimap.entrySet().parallelStream().forEach(entry -> {
-			for (V value : entry.getValue()) {
-				JarIndex.synchronizedAdd(resolved, remap(index, entry.getKey()), remap(index, value));
+			List<V> values = entry.getValue();
+			List<V> remapped = new ArrayList<>(values.size());
+
+			for (V value : values) {
+				remapped.add(valueRemapper.apply(value));
 			}
+
+			// keys only collide when several of them resolve to the same entry
+			resolved.merge(memo.resolve(entry.getKey()), remapped, ReferenceIndex::concat);
 		});
 
 		return resolved;
 	}
 
-	private <E extends Entry<?>, C extends Entry<?>> ConcurrentMap<E, List<EntryReference<E, C>>> remapReferencesTo(JarIndex index, ConcurrentMap<E, List<EntryReference<E, C>>> multimap) {
-		ConcurrentMap<E, List<EntryReference<E, C>>> resolved = new ConcurrentHashMap<>();
+	private static <V> List<V> concat(List<V> first, List<V> second) {
+		List<V> result = new ArrayList<>(first.size() + second.size());
+		result.addAll(first);
+		result.addAll(second);
+		return result;
+	}
+
+	/**
+	 * Remembers the resolution of every entry seen while processing the index, since the same entries are
+	 * referenced from many places. Def entries are kept apart, because they compare equal to the plain
+	 * entries but may resolve to a different type of entry.
+	 */
+	private static final class ResolutionMemo {
+		private final EntryResolver resolver;
+		private final EntryPool entryPool;
+		private final ConcurrentMap<Entry<?>, Entry<?>> resolvedEntries = new ConcurrentHashMap<>();
+		private final ConcurrentMap<Entry<?>, Entry<?>> resolvedDefEntries = new ConcurrentHashMap<>();
+
+		ResolutionMemo(EntryResolver resolver, EntryPool entryPool) {
+			this.resolver = resolver;
+			this.entryPool = entryPool;
+		}
 
-		multimap.entrySet().parallelStream().forEach(entry -> {
-			for (EntryReference<E, C> value : entry.getValue()) {
-				JarIndex.synchronizedAdd(resolved, remap(index, entry.getKey()), remap(index, value));
+		@SuppressWarnings("unchecked")
+		<E extends Entry<?>> E resolve(E entry) {
+			if (entry == null) {
+				return null;
 			}
-		});
 
-		return resolved;
+			ConcurrentMap<Entry<?>, Entry<?>> memo = entry instanceof DefEntry ? resolvedDefEntries : resolvedEntries;
+			Entry<?> result = memo.get(entry);
+
+			if (result == null) {
+				result = entryPool.intern(resolver.resolveFirstEntry(entry, ResolutionStrategy.RESOLVE_CLOSEST));
+				Entry<?> existing = memo.putIfAbsent(entry, result);
+
+				if (existing != null) {
+					result = existing;
+				}
+			}
+
+			return (E) result;
+		}
+
+		<E extends Entry<?>, C extends Entry<?>> EntryReference<E, C> resolve(EntryReference<E, C> reference) {
+			E entry = resolve(reference.entry);
+			C context = resolve(reference.context);
+
+			if (entry == reference.entry && context == reference.context) {
+				return reference;
+			}
+
+			return new EntryReference<>(entry, context, reference);
+		}
+	}
+
+	private static final class ReferenceBuffer {
+		private final Map<MethodEntry, List<MethodEntry>> methodReferences = new HashMap<>();
+		private final Map<MethodEntry, List<EntryReference<MethodEntry, MethodDefEntry>>> referencesToMethods = new HashMap<>();
+		private final Map<ClassEntry, List<EntryReference<ClassEntry, MethodDefEntry>>> referencesToClasses = new HashMap<>();
+		private final Map<FieldEntry, List<EntryReference<FieldEntry, MethodDefEntry>>> referencesToFields = new HashMap<>();
+		private final Map<ClassEntry, List<EntryReference<ClassEntry, FieldDefEntry>>> fieldTypeReferences = new HashMap<>();
+		private final Map<ClassEntry, List<EntryReference<ClassEntry, MethodDefEntry>>> methodTypeReferences = new HashMap<>();
+
+		private void clear() {
+			methodReferences.clear();
+			referencesToMethods.clear();
+			referencesToClasses.clear();
+			referencesToFields.clear();
+			fieldTypeReferences.clear();
+			methodTypeReferences.clear();
+		}
 	}
 
-	private <E extends Entry<?>> E remap(JarIndex index, E entry) {
-		return index.getEntryResolver().resolveFirstEntry(entry, ResolutionStrategy.RESOLVE_CLOSEST);
+	void write(IndexCacheOutput out) throws IOException {
+		out.writeMultimap(methodReferences, IndexCacheOutput::writeEntry);
+		out.writeMultimap(referencesToMethods, IndexCacheOutput::writeReference);
+		out.writeMultimap(referencesToClasses, IndexCacheOutput::writeReference);
+		out.writeMultimap(referencesToFields, IndexCacheOutput::writeReference);
+		out.writeMultimap(fieldTypeReferences, IndexCacheOutput::writeReference);
+		out.writeMultimap(methodTypeReferences, IndexCacheOutput::writeReference);
 	}
 
-	private <E extends Entry<?>, C extends Entry<?>> EntryReference<E, C> remap(JarIndex index, EntryReference<E, C> reference) {
-		return index.getEntryResolver().resolveFirstReference(reference, ResolutionStrategy.RESOLVE_CLOSEST);
+	void read(IndexCacheInput in) throws IOException {
+		in.readMultimap(methodReferences, MethodEntry.class, input -> input.readEntry(MethodEntry.class));
+		in.readMultimap(referencesToMethods, MethodEntry.class, input -> input.readReference(MethodEntry.class, MethodDefEntry.class));
+		in.readMultimap(referencesToClasses, ClassEntry.class, input -> input.readReference(ClassEntry.class, MethodDefEntry.class));
+		in.readMultimap(referencesToFields, FieldEntry.class, input -> input.readReference(FieldEntry.class, MethodDefEntry.class));
+		in.readMultimap(fieldTypeReferences, ClassEntry.class, input -> input.readReference(ClassEntry.class, FieldDefEntry.class));
+		in.readMultimap(methodTypeReferences, ClassEntry.class, input -> input.readReference(ClassEntry.class, MethodDefEntry.class));
 	}
 
 	public Collection<MethodEntry> getMethodsReferencedBy(MethodEntry entry) {
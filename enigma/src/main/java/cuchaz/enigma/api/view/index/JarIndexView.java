@@ -8,4 +8,5 @@ public interface JarIndexView {
 	InheritanceIndexView getInheritanceIndex();
 	ReferenceIndexView getReferenceIndex();
 	BridgeMethodIndexView getBridgeMethodIndex();
+	MethodEquivalenceIndexView getMethodEquivalenceIndex();
 }
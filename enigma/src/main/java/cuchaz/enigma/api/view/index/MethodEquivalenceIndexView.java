@@ -0,0 +1,15 @@
+package cuchaz.enigma.api.view.index;
+
+import java.util.Collection;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import cuchaz.enigma.api.view.entry.MethodEntryView;
+
+@ApiStatus.NonExtendable
+public interface MethodEquivalenceIndexView {
+	/**
+	 * Returns the methods that have to share a name with the given overridable method, including itself.
+	 */
+	Collection<? extends MethodEntryView> getEquivalentMethods(MethodEntryView method);
+}
@@ -6,14 +6,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -23,6 +28,10 @@ import javax.swing.SwingUtilities;
 import org.jetbrains.annotations.Nullable;
 
 import cuchaz.enigma.EnigmaProject;
+import cuchaz.enigma.api.service.NameProposalService;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.BytesCachingClassProvider;
+import cuchaz.enigma.classprovider.CachingClassProvider;
 import cuchaz.enigma.classprovider.DecompilerInputTransformingClassProvider;
 import cuchaz.enigma.classprovider.ObfuscationFixClassProvider;
 import cuchaz.enigma.events.ClassHandleListener;
@@ -31,22 +40,48 @@ import cuchaz.enigma.source.DecompiledClassSource;
 import cuchaz.enigma.source.Decompiler;
 import cuchaz.enigma.source.DecompilerService;
 import cuchaz.enigma.source.Source;
+import cuchaz.enigma.source.SourceCache;
 import cuchaz.enigma.source.SourceIndex;
 import cuchaz.enigma.source.SourceSettings;
+import cuchaz.enigma.translation.mapping.EntryResolver;
+import cuchaz.enigma.translation.mapping.ResolutionStrategy;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.translation.representation.entry.ParentedEntry;
 import cuchaz.enigma.utils.Result;
 
 public final class ClassHandleProvider {
+	/**
+	 * The number of neighbouring classes that are decompiled in the background when a class is opened, which
+	 * can be changed with the {@code enigma.decompilePrefetchCount} system property. Zero disables prefetching.
+	 */
+	private static final int PREFETCH_COUNT = Integer.getInteger("enigma.decompilePrefetchCount", 8);
+	private static final int PREFETCH_CACHE_SIZE = 32;
+
 	private final EnigmaProject project;
 
 	private final ExecutorService pool = Executors.newWorkStealingPool();
 	private DecompilerService ds;
-	private Decompiler decompiler;
+	// replaced when the decompiler is invalidated, and read by the prefetch workers
+	private volatile Decompiler decompiler;
+	private volatile BytesCachingClassProvider decompilerClassProvider;
+	private volatile boolean sourceCached;
 
 	private final Map<ClassEntry, Entry> handles = new HashMap<>();
 
 	private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
+	// speculatively decompiled sources of classes that aren't open yet, least recently used first
+	private final Map<ClassEntry, CompletableFuture<Source>> prefetched = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ClassEntry, CompletableFuture<Source>> eldest) {
+			return size() > PREFETCH_CACHE_SIZE;
+		}
+	};
+	private final AtomicInteger prefetchGeneration = new AtomicInteger();
+
+	private final SourceDependencyIndex dependencies = new SourceDependencyIndex();
+
 	public ClassHandleProvider(EnigmaProject project, DecompilerService ds) {
 		this.project = project;
 		this.ds = ds;
@@ -67,10 +102,157 @@ public final class ClassHandleProvider {
 			return null;
 		}
 
-		return withLock(lock.writeLock(), () -> {
-			Entry e = handles.computeIfAbsent(entry, entry1 -> new Entry(this, entry1));
+		AtomicBoolean opened = new AtomicBoolean();
+		ClassHandle handle = withLock(lock.writeLock(), () -> {
+			Entry e = handles.computeIfAbsent(entry, entry1 -> {
+				opened.set(true);
+				return new Entry(this, entry1);
+			});
 			return e.createHandle();
 		});
+
+		// the neighbours of a class that is already open were prefetched when it was opened
+		if (opened.get()) {
+			schedulePrefetch(entry);
+		}
+
+		return handle;
+	}
+
+	/**
+	 * Decompiles the classes that are most likely to be opened next in the background: the parents of the class,
+	 * the classes it calls into and its subclasses. Only one class is prefetched at a time so that classes which
+	 * are actually opened always get the other threads of the pool, and the prefetches which haven't started yet
+	 * are dropped when another class is opened.
+	 */
+	private void schedulePrefetch(ClassEntry entry) {
+		if (PREFETCH_COUNT <= 0) {
+			return;
+		}
+
+		int generation = prefetchGeneration.incrementAndGet();
+		CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+
+		for (ClassEntry candidate : findPrefetchCandidates(entry)) {
+			chain = chain.thenRunAsync(() -> prefetch(candidate, generation), pool);
+		}
+	}
+
+	private List<ClassEntry> findPrefetchCandidates(ClassEntry entry) {
+		JarIndex index = project.getJarIndex();
+		Set<ClassEntry> candidates = new LinkedHashSet<>();
+		Set<ClassEntry> classes = new LinkedHashSet<>();
+		classes.add(entry);
+
+		for (ParentedEntry<?> child : index.getChildrenByClass().getOrDefault(entry, List.of())) {
+			if (child instanceof ClassEntry innerClass) {
+				classes.add(innerClass);
+			}
+		}
+
+		for (ClassEntry classEntry : classes) {
+			candidates.addAll(index.getInheritanceIndex().getParents(classEntry));
+		}
+
+		for (ClassEntry classEntry : classes) {
+			for (ParentedEntry<?> child : index.getChildrenByClass().getOrDefault(classEntry, List.of())) {
+				if (child instanceof MethodEntry method) {
+					for (MethodEntry referenced : index.getReferenceIndex().getMethodsReferencedBy(method)) {
+						candidates.add(referenced.getParent());
+					}
+				}
+			}
+		}
+
+		for (ClassEntry classEntry : classes) {
+			candidates.addAll(index.getInheritanceIndex().getChildren(classEntry));
+		}
+
+		List<ClassEntry> result = new ArrayList<>();
+
+		for (ClassEntry candidate : candidates) {
+			ClassEntry outermost = candidate.getOutermostClass();
+
+			if (!outermost.equals(entry) && index.getEntryIndex().hasClass(outermost) && !result.contains(outermost)) {
+				result.add(outermost);
+
+				if (result.size() >= PREFETCH_COUNT) {
+					break;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private void prefetch(ClassEntry entry, int generation) {
+		if (prefetchGeneration.get() != generation || withLock(lock.readLock(), () -> handles.containsKey(entry))) {
+			return;
+		}
+
+		CompletableFuture<Source> future = new CompletableFuture<>();
+		Decompiler decompiler;
+		boolean sourceCached;
+
+		synchronized (prefetched) {
+			// clearPrefetched may have run since the check above, in which case the decompiler may be outdated
+			if (prefetchGeneration.get() != generation || prefetched.putIfAbsent(entry, future) != null) {
+				return;
+			}
+
+			decompiler = this.decompiler;
+			sourceCached = this.sourceCached;
+		}
+
+		try {
+			Source source = decompiler.getSource(entry.getFullName(), null);
+
+			if (sourceCached) {
+				// cached sources are only decompiled when indexed, so index the source like the class handle
+				// will do to have it in the cache when the class is opened
+				source.withJavadocs(project.getMapper()).index();
+			}
+
+			future.complete(source);
+		} catch (Throwable t) {
+			future.completeExceptionally(t);
+
+			synchronized (prefetched) {
+				prefetched.remove(entry, future);
+			}
+		}
+	}
+
+	/**
+	 * Removes and returns the prefetched source of a class, waiting for it if it is still being decompiled.
+	 *
+	 * @return the source, or {@code null} if the class wasn't prefetched or failed to decompile
+	 */
+	@Nullable
+	private Source takePrefetched(ClassEntry entry) {
+		CompletableFuture<Source> future;
+
+		synchronized (prefetched) {
+			future = prefetched.remove(entry);
+		}
+
+		if (future == null) {
+			return null;
+		}
+
+		try {
+			return future.join();
+		} catch (CompletionException | CancellationException e) {
+			return null;
+		}
+	}
+
+	private void clearPrefetched() {
+		prefetchGeneration.incrementAndGet();
+
+		synchronized (prefetched) {
+			prefetched.clear();
+		}
 	}
 
 	/**
@@ -89,6 +271,7 @@ public final class ClassHandleProvider {
 
 		this.ds = ds;
 		this.decompiler = createDecompiler();
+		clearPrefetched();
 		withLock(lock.readLock(), () -> {
 			handles.values().forEach(Entry::invalidate);
 		});
@@ -103,14 +286,35 @@ public final class ClassHandleProvider {
 		return ds;
 	}
 
+	/**
+	 * Creates a decompiler for the current service. Each decompiler gets its own cache of the class files it
+	 * resolves types from, which is only discarded when the decompiler is replaced.
+	 */
 	private Decompiler createDecompiler() {
-		return ds.create(
-				new ObfuscationFixClassProvider(
-						new DecompilerInputTransformingClassProvider(project.getClassProvider(), project.getEnigma().getServices()),
-						project.getJarIndex()
-				),
-				new SourceSettings(true, true)
-		);
+		BytesCachingClassProvider classProvider = new BytesCachingClassProvider(new ObfuscationFixClassProvider(
+				new DecompilerInputTransformingClassProvider(project.getClassProvider(), project.getEnigma().getServices()),
+				project.getJarIndex()
+		));
+		decompilerClassProvider = classProvider;
+		SourceSettings settings = new SourceSettings(true, true);
+		Decompiler decompiler = ds.create(classProvider, settings);
+		SourceCache sourceCache = project.getEnigma().getSourceCache();
+
+		if (sourceCache == null) {
+			sourceCached = false;
+			return decompiler;
+		}
+
+		Decompiler cachingDecompiler = sourceCache.wrap(decompiler, ds, settings, classProvider, project.getJarIndex());
+		sourceCached = cachingDecompiler != decompiler;
+		return cachingDecompiler;
+	}
+
+	/**
+	 * Returns the statistics of the class file cache of the current decompiler.
+	 */
+	public CachingClassProvider.Stats getDecompilerCacheStats() {
+		return decompilerClassProvider.getStats();
 	}
 
 	/**
@@ -141,6 +345,37 @@ public final class ClassHandleProvider {
 		});
 	}
 
+	/**
+	 * Finds the open classes whose remapped source depends on the name of an
+	 * entry, which are the classes that have to be remapped when the entry is
+	 * renamed. Classes that haven't been indexed yet are not included, since
+	 * they will be remapped with the new name anyway.
+	 *
+	 * @param entry the renamed entry
+	 * @return the classes to remap, or {@code null} if any class may be
+	 * affected because name proposal services can base their names on other
+	 * mappings
+	 */
+	@Nullable
+	public Set<ClassEntry> getClassesReferencing(cuchaz.enigma.translation.representation.entry.Entry<?> entry) {
+		if (!project.getEnigma().getServices().get(NameProposalService.TYPE).isEmpty()) {
+			return null;
+		}
+
+		EntryResolver resolver = project.getMapper().getObfResolver();
+		Set<cuchaz.enigma.translation.representation.entry.Entry<?>> entries = new HashSet<>(resolver.resolveEquivalentEntries(entry));
+		entries.add(entry);
+		entries.addAll(resolver.resolveEntry(entry, ResolutionStrategy.RESOLVE_ROOT));
+		Set<ClassEntry> classes = dependencies.getClasses(entries);
+
+		if (entry instanceof ClassEntry classEntry && withLock(lock.readLock(), () -> handles.containsKey(classEntry))) {
+			// the handle of a renamed class has to update its deobfuscated name
+			classes.add(classEntry);
+		}
+
+		return classes;
+	}
+
 	/**
 	 * Invalidates all javadoc. This causes all open class handles to be
 	 * re-remapped.
@@ -171,13 +406,32 @@ public final class ClassHandleProvider {
 		});
 	}
 
+	/**
+	 * Invalidates all classes, because the input of the decompiler changed.
+	 * This recreates the decompiler, discarding the types it has resolved, and
+	 * causes all open class handles to be decompiled again.
+	 */
 	public void invalidate() {
+		this.decompiler = createDecompiler();
+		clearPrefetched();
 		withLock(lock.readLock(), () -> {
 			handles.values().forEach(Entry::invalidate);
 		});
 	}
 
+	/**
+	 * Invalidates a single class, because its input to the decompiler changed.
+	 * This also invalidates its outer classes.
+	 *
+	 * @param entry the class entry to invalidate
+	 */
 	public void invalidate(ClassEntry entry) {
+		decompilerClassProvider.invalidate(entry.getFullName());
+
+		synchronized (prefetched) {
+			prefetched.remove(entry.getOutermostClass());
+		}
+
 		withLock(lock.readLock(), () -> {
 			Entry e = handles.get(entry);
 
@@ -194,6 +448,18 @@ public final class ClassHandleProvider {
 	private void deleteEntry(Entry entry) {
 		withLock(lock.writeLock(), () -> {
 			handles.remove(entry.entry);
+			dependencies.remove(entry.entry);
+		});
+	}
+
+	private void updateDependencies(Entry entry, SourceIndex index) {
+		Set<cuchaz.enigma.translation.representation.entry.Entry<?>> entries = SourceDependencyIndex.collectDependencies(index, project.getMapper().getObfResolver());
+
+		withLock(lock.readLock(), () -> {
+			// the handles may have been closed while the class was being indexed
+			if (handles.get(entry.entry) == entry) {
+				dependencies.put(entry.entry, entries);
+			}
 		});
 	}
 
@@ -207,6 +473,7 @@ public final class ClassHandleProvider {
 	 * be used.
 	 */
 	public void destroy() {
+		clearPrefetched();
 		pool.shutdown();
 
 		try {
@@ -218,6 +485,7 @@ public final class ClassHandleProvider {
 		withLock(lock.writeLock(), () -> {
 			handles.values().forEach(Entry::destroy);
 			handles.clear();
+			dependencies.clear();
 		});
 	}
 
@@ -296,7 +564,8 @@ public final class ClassHandleProvider {
 					return null;
 				}
 
-				Result<Source, ClassHandleError> uncommentedSource = Result.ok(p.decompiler.getSource(entry.getFullName()));
+				Source prefetchedSource = p.takePrefetched(entry);
+				Result<Source, ClassHandleError> uncommentedSource = Result.ok(prefetchedSource != null ? prefetchedSource : p.decompiler.getSource(entry.getFullName()));
 
 				synchronized (decompileCompleteMutex) {
 					if (decompileVersion.get() != v) {
@@ -350,6 +619,7 @@ public final class ClassHandleProvider {
 				return res.andThen(jdSource -> {
 					SourceIndex index = jdSource.index();
 					index.resolveReferences(p.project.getMapper().getObfResolver());
+					p.updateDependencies(Entry.this, index);
 					DecompiledClassSource source = new DecompiledClassSource(entry, index);
 					return Result.ok(source);
 				});
@@ -0,0 +1,101 @@
+package cuchaz.enigma.classhandle;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import cuchaz.enigma.source.SourceIndex;
+import cuchaz.enigma.source.Token;
+import cuchaz.enigma.translation.mapping.EntryResolver;
+import cuchaz.enigma.translation.mapping.ResolutionStrategy;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableDefEntry;
+
+/**
+ * Keeps track of the obfuscated entries whose names show up in the source of each open class, so that renaming an
+ * entry only has to remap the classes that mention it.
+ */
+final class SourceDependencyIndex {
+	private final Map<ClassEntry, Set<Entry<?>>> entriesByClass = new HashMap<>();
+	private final Map<Entry<?>, Set<ClassEntry>> classesByEntry = new HashMap<>();
+
+	/**
+	 * Collects the entries whose mappings the remapped source of an index depends on. Since mappings are stored
+	 * on the root of an entry, the roots of the referenced entries are collected as well.
+	 */
+	static Set<Entry<?>> collectDependencies(SourceIndex index, EntryResolver resolver) {
+		Set<Entry<?>> entries = new HashSet<>();
+
+		for (Token token : index.referenceTokens()) {
+			Entry<?> entry = index.getReference(token).getNameableEntry();
+
+			if (entries.add(entry)) {
+				entries.addAll(resolver.resolveEntry(entry, ResolutionStrategy.RESOLVE_ROOT));
+			}
+
+			// the default names of unmapped locals are generated from the names of their types
+			if (entry instanceof LocalVariableDefEntry localVariable) {
+				addType(entries, localVariable.getDesc());
+
+				if (localVariable.isArgument()) {
+					for (TypeDescriptor argument : localVariable.getParent().getDesc().getArgumentDescs()) {
+						addType(entries, argument);
+					}
+				}
+			}
+		}
+
+		return entries;
+	}
+
+	private static void addType(Set<Entry<?>> entries, TypeDescriptor desc) {
+		if (desc.containsType()) {
+			entries.add(desc.getTypeEntry());
+		}
+	}
+
+	synchronized void put(ClassEntry classEntry, Set<Entry<?>> entries) {
+		remove(classEntry);
+		entriesByClass.put(classEntry, entries);
+
+		for (Entry<?> entry : entries) {
+			classesByEntry.computeIfAbsent(entry, e -> new HashSet<>()).add(classEntry);
+		}
+	}
+
+	synchronized void remove(ClassEntry classEntry) {
+		Set<Entry<?>> entries = entriesByClass.remove(classEntry);
+
+		if (entries == null) {
+			return;
+		}
+
+		for (Entry<?> entry : entries) {
+			Set<ClassEntry> classes = classesByEntry.get(entry);
+			classes.remove(classEntry);
+
+			if (classes.isEmpty()) {
+				classesByEntry.remove(entry);
+			}
+		}
+	}
+
+	synchronized Set<ClassEntry> getClasses(Collection<? extends Entry<?>> entries) {
+		Set<ClassEntry> classes = new HashSet<>();
+
+		for (Entry<?> entry : entries) {
+			classes.addAll(classesByEntry.getOrDefault(entry, Set.of()));
+		}
+
+		return classes;
+	}
+
+	synchronized void clear() {
+		entriesByClass.clear();
+		classesByEntry.clear();
+	}
+}
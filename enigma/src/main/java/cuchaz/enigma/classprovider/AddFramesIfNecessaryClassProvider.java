@@ -4,10 +4,12 @@ import java.util.Collection;
 
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.ClassNode;
 
+import cuchaz.enigma.Enigma;
 import cuchaz.enigma.analysis.IndexClassWriter;
 import cuchaz.enigma.analysis.index.EntryIndex;
 
@@ -46,4 +48,60 @@ public class AddFramesIfNecessaryClassProvider implements ClassProvider {
 		cr.accept(node, 0);
 		return node;
 	}
+
+	@Override
+	public boolean accept(String name, ClassVisitor visitor) {
+		return delegate.accept(name, new FrameAddingVisitor(visitor));
+	}
+
+	@Override
+	@Nullable
+	public byte[] getBytes(String name) {
+		byte[] bytes = delegate.getBytes(name);
+
+		// the major version follows the magic number and the minor version
+		if (bytes == null || bytes.length < 8 || ((bytes[6] & 0xFF) << 8 | (bytes[7] & 0xFF)) >= Opcodes.V1_7) {
+			return bytes;
+		}
+
+		IndexClassWriter cw = new IndexClassWriter(entryIndex, ClassWriter.COMPUTE_FRAMES);
+		new ClassReader(bytes).accept(cw, 0);
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Forwards classes that already have frames to the target visitor as they are streamed, and
+	 * only buffers the classes that need their frames computed.
+	 */
+	private final class FrameAddingVisitor extends ClassVisitor {
+		private final ClassVisitor target;
+		@Nullable
+		private ClassWriter writer;
+
+		private FrameAddingVisitor(ClassVisitor target) {
+			super(Enigma.ASM_VERSION);
+			this.target = target;
+		}
+
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+			if ((version & 0xffff) >= Opcodes.V1_7) {
+				cv = target;
+			} else {
+				writer = new IndexClassWriter(entryIndex, ClassWriter.COMPUTE_FRAMES);
+				cv = writer;
+			}
+
+			super.visit(version, access, name, signature, superName, interfaces);
+		}
+
+		@Override
+		public void visitEnd() {
+			super.visitEnd();
+
+			if (writer != null) {
+				new ClassReader(writer.toByteArray()).accept(target, 0);
+			}
+		}
+	}
 }
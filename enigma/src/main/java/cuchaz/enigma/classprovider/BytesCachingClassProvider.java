@@ -0,0 +1,138 @@
+package cuchaz.enigma.classprovider;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Wraps a ClassProvider to cache the class files returned by {@link #getBytes(String)}, which is how decompilers
+ * resolve the types referenced by the class they decompile. Since related classes reference mostly the same
+ * types, this saves transforming and serializing those types again for every class.
+ *
+ * <p>The cache is bounded by the total size of the cached class files, and evicts the least recently used ones.
+ * Classes that could not be found are cached too. {@link #get(String)} and {@link #accept(String, ClassVisitor)}
+ * are not cached.
+ */
+public class BytesCachingClassProvider implements ClassProvider {
+	/**
+	 * The default maximum size of the cached class files in bytes, which can be changed with the
+	 * {@code enigma.decompilerClassCacheSize} system property.
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = Long.getLong("enigma.decompilerClassCacheSize", 32L * 1024 * 1024);
+
+	private static final byte[] MISSING = new byte[0];
+	private static final int MISSING_WEIGHT = 64;
+
+	private final ClassProvider classProvider;
+	private final long maxWeight;
+	// in access order, eldest first
+	private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public BytesCachingClassProvider(ClassProvider classProvider) {
+		this(classProvider, DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * @param maxWeight the maximum size of the cached class files in bytes
+	 */
+	public BytesCachingClassProvider(ClassProvider classProvider, long maxWeight) {
+		if (maxWeight < 0) {
+			throw new IllegalArgumentException("Cache size cannot be negative: " + maxWeight);
+		}
+
+		this.classProvider = classProvider;
+		this.maxWeight = maxWeight;
+	}
+
+	@Override
+	public Collection<String> getClassNames() {
+		return classProvider.getClassNames();
+	}
+
+	@Override
+	@Nullable
+	public ClassNode get(String name) {
+		return classProvider.get(name);
+	}
+
+	@Override
+	public boolean accept(String name, ClassVisitor visitor) {
+		return classProvider.accept(name, visitor);
+	}
+
+	@Override
+	@Nullable
+	public byte[] getBytes(String name) {
+		synchronized (this) {
+			byte[] bytes = cache.get(name);
+
+			if (bytes != null) {
+				hits++;
+				return bytes == MISSING ? null : bytes;
+			}
+
+			misses++;
+		}
+
+		// load outside the lock, since transforming a class can be slow
+		byte[] bytes = classProvider.getBytes(name);
+
+		synchronized (this) {
+			byte[] previous = cache.put(name, bytes != null ? bytes : MISSING);
+
+			if (previous != null) {
+				weight -= weigh(previous);
+			}
+
+			weight += weigh(bytes != null ? bytes : MISSING);
+			evict();
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Removes a class from the cache, so that it's loaded again the next time it's requested.
+	 */
+	public synchronized void invalidate(String name) {
+		byte[] bytes = cache.remove(name);
+
+		if (bytes != null) {
+			weight -= weigh(bytes);
+		}
+	}
+
+	public synchronized void invalidateAll() {
+		cache.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Returns a snapshot of the cache statistics since this provider was created.
+	 */
+	public synchronized CachingClassProvider.Stats getStats() {
+		return new CachingClassProvider.Stats(hits, misses, evictions, cache.size(), weight);
+	}
+
+	private void evict() {
+		Iterator<byte[]> iterator = cache.values().iterator();
+
+		while (weight > maxWeight && iterator.hasNext()) {
+			weight -= weigh(iterator.next());
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	private static long weigh(byte[] bytes) {
+		return bytes == MISSING ? MISSING_WEIGHT : bytes.length;
+	}
+}
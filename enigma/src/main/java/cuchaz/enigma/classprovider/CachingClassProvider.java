@@ -2,25 +2,56 @@ package cuchaz.enigma.classprovider;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 
 /**
  * Wraps a ClassProvider to provide caching and synchronization.
+ *
+ * <p>The cache is bounded by the estimated memory used by the cached classes. It is split into segments
+ * that are locked independently, each of which is a segmented LRU: classes enter a probation area and are
+ * promoted to a protected area when they are requested again, so that a burst of classes which are only
+ * used once can't evict the classes that are used all the time.
  */
 public class CachingClassProvider implements ClassProvider {
-	private static final long EXPIRE_AFTER = 1 * 60 * 1000; // one minute
-	private static final long MAX_SIZE = 128;
+	/**
+	 * The default maximum estimated size of the cached classes in bytes, which can be changed with the
+	 * {@code enigma.classCacheSize} system property.
+	 */
+	public static final long DEFAULT_MAX_WEIGHT = Long.getLong("enigma.classCacheSize", 64L * 1024 * 1024);
+
+	private static final int SEGMENT_COUNT = 16;
+	private static final int PROTECTED_PERCENTAGE = 80;
+
 	private final ClassProvider classProvider;
-	private long lastPruneTime = 0;
-	private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+	private final Segment[] segments = new Segment[SEGMENT_COUNT];
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
 
 	public CachingClassProvider(ClassProvider classProvider) {
+		this(classProvider, DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * @param maxWeight the maximum estimated size of the cached classes in bytes
+	 */
+	public CachingClassProvider(ClassProvider classProvider, long maxWeight) {
+		if (maxWeight < 0) {
+			throw new IllegalArgumentException("Cache size cannot be negative: " + maxWeight);
+		}
+
 		this.classProvider = classProvider;
+
+		for (int i = 0; i < SEGMENT_COUNT; i++) {
+			segments[i] = new Segment(maxWeight / SEGMENT_COUNT);
+		}
 	}
 
 	@Override
@@ -31,54 +62,185 @@ public class CachingClassProvider implements ClassProvider {
 	@Override
 	@Nullable
 	public ClassNode get(String name) {
-		final long time = System.currentTimeMillis();
-		boolean prune = false;
-
-		if (lastPruneTime + 2 * EXPIRE_AFTER < time) {
-			synchronized (cache) {
-				if (lastPruneTime + 2 * EXPIRE_AFTER < time) {
-					lastPruneTime = time;
-					prune = true;
-				}
-			}
+		Segment segment = getSegment(name);
+		CacheEntry entry = segment.get(name);
+
+		if (entry != null) {
+			hits.increment();
+			return entry.classNode;
 		}
 
-		if (prune) {
-			cache.values().removeIf(value -> value.addTime + EXPIRE_AFTER < time);
+		misses.increment();
+
+		// load outside the lock, so that a slow class doesn't block the other classes of its segment
+		ClassNode classNode = classProvider.get(name);
+		return segment.put(name, new CacheEntry(classNode, estimateWeight(classNode)));
+	}
+
+	/**
+	 * Visits the cached class if there is one, and otherwise streams the class from the wrapped provider
+	 * without caching it, since a class that is only visited once isn't worth keeping.
+	 */
+	@Override
+	public boolean accept(String name, ClassVisitor visitor) {
+		CacheEntry entry = getSegment(name).get(name);
+
+		if (entry == null) {
+			misses.increment();
+			return classProvider.accept(name, visitor);
 		}
 
-		if (cache.size() > MAX_SIZE) {
-			synchronized (cache) {
-				if (cache.size() > MAX_SIZE) {
-					Iterator<Map.Entry<String, CacheEntry>> iterator = cache.entrySet().iterator();
-					iterator.next();
-					iterator.remove();
-				}
+		hits.increment();
+
+		if (entry.classNode == null) {
+			return false;
+		}
+
+		entry.classNode.accept(visitor);
+		return true;
+	}
+
+	/**
+	 * Reads the class file from the wrapped provider, since that is cheaper than serializing the cached class.
+	 */
+	@Override
+	@Nullable
+	public byte[] getBytes(String name) {
+		return classProvider.getBytes(name);
+	}
+
+	private Segment getSegment(String name) {
+		return segments[(name.hashCode() & 0x7FFFFFFF) % SEGMENT_COUNT];
+	}
+
+	/**
+	 * Returns a snapshot of the cache statistics since this provider was created.
+	 */
+	public Stats getStats() {
+		long weight = 0;
+		int size = 0;
+
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				weight += segment.weight;
+				size += segment.probation.size() + segment.protectedEntries.size();
 			}
 		}
 
-		CacheEntry entry = cache.computeIfAbsent(name, key -> new CacheEntry(time, classProvider.get(key)));
-		entry.addTime = time;
-		return entry.classNode;
+		return new Stats(hits.sum(), misses.sum(), evictions.sum(), size, weight);
 	}
 
-	private static final class CacheEntry {
-		private long addTime;
-		private final @Nullable ClassNode classNode;
+	/**
+	 * Roughly estimates the memory used by a class node, which is mostly taken up by its instructions.
+	 */
+	private static long estimateWeight(@Nullable ClassNode classNode) {
+		if (classNode == null) {
+			return 64;
+		}
+
+		long weight = 512 + 128L * classNode.fields.size();
 
-		private CacheEntry(long addTime, @Nullable ClassNode classNode) {
-			this.addTime = addTime;
-			this.classNode = classNode;
+		for (MethodNode method : classNode.methods) {
+			weight += 256 + 64L * method.instructions.size();
 		}
 
-		@Override
-		public boolean equals(Object obj) {
-			return obj instanceof CacheEntry ce && Objects.equals(classNode, ce.classNode);
+		return weight;
+	}
+
+	/**
+	 * @param hitCount the number of requests served from the cache
+	 * @param missCount the number of requests that had to load the class
+	 * @param evictionCount the number of classes removed to stay within the size bound
+	 * @param size the number of classes currently cached
+	 * @param weight the estimated size of the classes currently cached in bytes
+	 */
+	public record Stats(long hitCount, long missCount, long evictionCount, int size, long weight) {
+		public double hitRate() {
+			long requests = hitCount + missCount;
+			return requests == 0 ? 1 : (double) hitCount / requests;
+		}
+	}
+
+	private record CacheEntry(@Nullable ClassNode classNode, long weight) {
+	}
+
+	private final class Segment {
+		private final long maxWeight;
+		private final long maxProtectedWeight;
+		// both in access order, eldest first
+		private final LinkedHashMap<String, CacheEntry> probation = new LinkedHashMap<>(16, 0.75f, true);
+		private final LinkedHashMap<String, CacheEntry> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+		private long weight;
+		private long protectedWeight;
+
+		private Segment(long maxWeight) {
+			this.maxWeight = maxWeight;
+			this.maxProtectedWeight = maxWeight * PROTECTED_PERCENTAGE / 100;
+		}
+
+		@Nullable
+		private synchronized CacheEntry get(String name) {
+			CacheEntry entry = protectedEntries.get(name);
+
+			if (entry != null) {
+				return entry;
+			}
+
+			entry = probation.remove(name);
+
+			if (entry != null) {
+				promote(name, entry);
+			}
+
+			return entry;
+		}
+
+		/**
+		 * Adds a loaded class unless another thread was faster, and returns the class that is now cached.
+		 */
+		@Nullable
+		private synchronized ClassNode put(String name, CacheEntry entry) {
+			CacheEntry existing = get(name);
+
+			if (existing != null) {
+				return existing.classNode;
+			}
+
+			probation.put(name, entry);
+			weight += entry.weight;
+			evict();
+			return entry.classNode;
 		}
 
-		@Override
-		public int hashCode() {
-			return Objects.hash(addTime, classNode);
+		private void promote(String name, CacheEntry entry) {
+			protectedEntries.put(name, entry);
+			protectedWeight += entry.weight;
+
+			// demote the least recently used protected classes back to probation
+			Iterator<Map.Entry<String, CacheEntry>> iterator = protectedEntries.entrySet().iterator();
+
+			while (protectedWeight > maxProtectedWeight && protectedEntries.size() > 1) {
+				Map.Entry<String, CacheEntry> eldest = iterator.next();
+				iterator.remove();
+				protectedWeight -= eldest.getValue().weight;
+				probation.put(eldest.getKey(), eldest.getValue());
+			}
+		}
+
+		private void evict() {
+			while (weight > maxWeight && !(probation.isEmpty() && protectedEntries.isEmpty())) {
+				Map<String, CacheEntry> victims = probation.isEmpty() ? protectedEntries : probation;
+				Iterator<Map.Entry<String, CacheEntry>> iterator = victims.entrySet().iterator();
+				Map.Entry<String, CacheEntry> eldest = iterator.next();
+				iterator.remove();
+				weight -= eldest.getValue().weight;
+
+				if (victims == protectedEntries) {
+					protectedWeight -= eldest.getValue().weight;
+				}
+
+				evictions.increment();
+			}
 		}
 	}
 }
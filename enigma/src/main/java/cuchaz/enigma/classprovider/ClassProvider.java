@@ -3,8 +3,11 @@ package cuchaz.enigma.classprovider;
 import java.util.Collection;
 
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.tree.ClassNode;
 
+import cuchaz.enigma.utils.AsmUtil;
+
 public interface ClassProvider {
 	/**
 	 * @return Internal names of all contained classes. May be empty if the provider is lazy.
@@ -20,4 +23,38 @@ public interface ClassProvider {
 	 */
 	@Nullable
 	ClassNode get(String name);
+
+	/**
+	 * Makes the visitor visit a class. Providers that read classes from bytes can stream them into
+	 * the visitor without building a {@linkplain ClassNode} tree, so this is preferable to
+	 * {@link #get(String)} when the class is only visited once.
+	 *
+	 * @param name the internal name of the class
+	 * @param visitor the visitor, which is not called at all if the class was not found
+	 * @return whether the class was found
+	 */
+	default boolean accept(String name, ClassVisitor visitor) {
+		ClassNode node = get(name);
+
+		if (node == null) {
+			return false;
+		}
+
+		node.accept(visitor);
+		return true;
+	}
+
+	/**
+	 * Gets the class file of a class. Providers that read classes from bytes and don't change them return
+	 * those bytes as they are, so this is preferable to serializing {@link #get(String)} when the class is
+	 * going to be parsed by something other than ASM anyway.
+	 *
+	 * @param name the internal name of the class
+	 * @return the class file, which must not be modified, or {@code null} if the class was not found
+	 */
+	@Nullable
+	default byte[] getBytes(String name) {
+		ClassNode node = get(name);
+		return node != null ? AsmUtil.nodeToBytes(node) : null;
+	}
 }
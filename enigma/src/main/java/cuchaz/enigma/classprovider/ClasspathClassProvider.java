@@ -7,6 +7,7 @@ import java.util.Collections;
 
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.tree.ClassNode;
 
 /**
@@ -21,14 +22,33 @@ public class ClasspathClassProvider implements ClassProvider {
 	@Nullable
 	@Override
 	public ClassNode get(String name) {
+		ClassNode node = new ClassNode();
+		return accept(name, node) ? node : null;
+	}
+
+	@Override
+	public boolean accept(String name, ClassVisitor visitor) {
+		ClassReader reader;
+
 		try (InputStream in = ClasspathClassProvider.class.getResourceAsStream("/" + name + ".class")) {
 			if (in == null) {
-				return null;
+				return false;
 			}
 
-			ClassNode node = new ClassNode();
-			new ClassReader(in).accept(node, 0);
-			return node;
+			reader = new ClassReader(in);
+		} catch (IOException e) {
+			return false;
+		}
+
+		reader.accept(visitor, 0);
+		return true;
+	}
+
+	@Nullable
+	@Override
+	public byte[] getBytes(String name) {
+		try (InputStream in = ClasspathClassProvider.class.getResourceAsStream("/" + name + ".class")) {
+			return in != null ? in.readAllBytes() : null;
 		} catch (IOException e) {
 			return null;
 		}
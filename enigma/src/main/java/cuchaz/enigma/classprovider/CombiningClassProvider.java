@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.tree.ClassNode;
 
 /**
@@ -39,4 +40,29 @@ public class CombiningClassProvider implements ClassProvider {
 
 		return null;
 	}
+
+	@Override
+	public boolean accept(String name, ClassVisitor visitor) {
+		for (ClassProvider cp : classProviders) {
+			if (cp.accept(name, visitor)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	@Nullable
+	public byte[] getBytes(String name) {
+		for (ClassProvider cp : classProviders) {
+			byte[] bytes = cp.getBytes(name);
+
+			if (bytes != null) {
+				return bytes;
+			}
+		}
+
+		return null;
+	}
 }
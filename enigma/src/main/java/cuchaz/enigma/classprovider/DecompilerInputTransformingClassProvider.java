@@ -37,4 +37,15 @@ public class DecompilerInputTransformingClassProvider implements ClassProvider {
 
 		return classNode;
 	}
+
+	@Override
+	@Nullable
+	public byte[] getBytes(String name) {
+		if (services.get(DecompilerInputTransformerService.TYPE).isEmpty()) {
+			return delegate.getBytes(name);
+		}
+
+		// a transformer may have changed the class
+		return ClassProvider.super.getBytes(name);
+	}
 }
@@ -1,43 +1,40 @@
 package cuchaz.enigma.classprovider;
 
 import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.FileSystems;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Stream;
 
 import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.tree.ClassNode;
 
 import cuchaz.enigma.utils.AsmUtil;
+import cuchaz.enigma.utils.MappedZipFile;
 
 /**
- * Provides classes by loading them from a JAR file.
+ * Provides classes by loading them from a JAR file. The JAR is memory-mapped and its central
+ * directory is read once, so looking up a class doesn't go through a zip file system.
  */
 public class JarClassProvider implements AutoCloseable, ClassProvider {
-	private final FileSystem fileSystem;
+	private final MappedZipFile zipFile;
 	private final Set<String> classNames;
 
 	public JarClassProvider(Path jarPath) throws IOException {
-		this.fileSystem = FileSystems.newFileSystem(jarPath, (ClassLoader) null);
-		this.classNames = collectClassNames(fileSystem);
+		this.zipFile = new MappedZipFile(jarPath);
+		this.classNames = collectClassNames(zipFile);
 	}
 
-	private static Set<String> collectClassNames(FileSystem fileSystem) throws IOException {
+	private static Set<String> collectClassNames(MappedZipFile zipFile) {
 		Set<String> classNames = new HashSet<>();
 
-		for (Path root : fileSystem.getRootDirectories()) {
-			try (Stream<Path> stream = Files.walk(root)) {
-				stream.map(Path::toString).forEach(path -> {
-					if (path.endsWith(".class")) {
-						String name = path.substring(1, path.length() - ".class".length());
-						classNames.add(name);
-					}
-				});
+		for (MappedZipFile.Entry entry : zipFile.getEntries()) {
+			String name = entry.name();
+
+			if (name.endsWith(".class") && !entry.isDirectory()) {
+				classNames.add(name.substring(0, name.length() - ".class".length()));
 			}
 		}
 
@@ -57,7 +54,35 @@ public class JarClassProvider implements AutoCloseable, ClassProvider {
 		}
 
 		try {
-			return AsmUtil.bytesToNode(Files.readAllBytes(fileSystem.getPath(name + ".class")));
+			return AsmUtil.bytesToNode(zipFile.read(name + ".class"));
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public boolean accept(String name, ClassVisitor visitor) {
+		if (!classNames.contains(name)) {
+			return false;
+		}
+
+		try {
+			new ClassReader(zipFile.read(name + ".class")).accept(visitor, 0);
+			return true;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Nullable
+	@Override
+	public byte[] getBytes(String name) {
+		if (!classNames.contains(name)) {
+			return null;
+		}
+
+		try {
+			return zipFile.read(name + ".class");
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -65,6 +90,6 @@ public class JarClassProvider implements AutoCloseable, ClassProvider {
 
 	@Override
 	public void close() throws Exception {
-		fileSystem.close();
+		zipFile.close();
 	}
 }
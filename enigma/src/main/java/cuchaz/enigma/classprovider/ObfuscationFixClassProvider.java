@@ -63,6 +63,19 @@ public class ObfuscationFixClassProvider implements ClassProvider {
 		return fixedNode;
 	}
 
+	/**
+	 * Returns library classes as they are, and serializes the fixed classes of the jar.
+	 */
+	@Override
+	@Nullable
+	public byte[] getBytes(String name) {
+		if (!jarIndex.isIndexed(name)) {
+			return classProvider.getBytes(name);
+		}
+
+		return ClassProvider.super.getBytes(name);
+	}
+
 	private void removeRedundantClassCalls(ClassNode node) {
 		// Removes .getClass() calls added by Proguard:
 		// DUP
@@ -30,6 +30,25 @@ public class ConfigPaths {
 		}
 	}
 
+	public static Path getCachePathRoot() {
+		switch (Os.getOs()) {
+		case LINUX:
+			String cacheHome = System.getenv("XDG_CACHE_HOME");
+
+			if (cacheHome == null) {
+				return getUserHomeUnix().resolve(".cache");
+			}
+
+			return Paths.get(cacheHome);
+		case MAC:
+			return getUserHomeUnix().resolve("Library").resolve("Caches");
+		case WINDOWS:
+			return Paths.get(System.getenv("LOCALAPPDATA"));
+		default:
+			return Paths.get(System.getProperty("user.dir"));
+		}
+	}
+
 	private static Path getUserHomeUnix() {
 		String userHome = System.getenv("HOME");
 
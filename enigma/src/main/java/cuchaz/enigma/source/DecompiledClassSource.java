@@ -1,6 +1,8 @@
 package cuchaz.enigma.source;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +24,7 @@ import cuchaz.enigma.translation.representation.TypeDescriptor;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.Entry;
 import cuchaz.enigma.translation.representation.entry.LocalVariableDefEntry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
 
 public class DecompiledClassSource {
 	private final ClassEntry classEntry;
@@ -31,63 +34,96 @@ public class DecompiledClassSource {
 
 	private final TokenStore highlightedTokens;
 
-	private DecompiledClassSource(ClassEntry classEntry, SourceIndex obfuscatedIndex, SourceIndex remappedIndex, TokenStore highlightedTokens) {
+	// how each reference token was remapped, in source order, or null if this source wasn't remapped
+	@Nullable
+	private final List<RemappedToken> remappedTokens;
+
+	// built when offsets are first translated
+	private volatile OffsetTable obfToDeobfOffsets;
+	private volatile OffsetTable deobfToObfOffsets;
+
+	private DecompiledClassSource(ClassEntry classEntry, SourceIndex obfuscatedIndex, SourceIndex remappedIndex, TokenStore highlightedTokens, @Nullable List<RemappedToken> remappedTokens) {
 		this.classEntry = classEntry;
 		this.obfuscatedIndex = obfuscatedIndex;
 		this.remappedIndex = remappedIndex;
 		this.highlightedTokens = highlightedTokens;
+		this.remappedTokens = remappedTokens;
 	}
 
 	public DecompiledClassSource(ClassEntry classEntry, SourceIndex index) {
-		this(classEntry, index, index, TokenStore.empty());
+		this(classEntry, index, index, TokenStore.empty(), null);
 	}
 
 	public static DecompiledClassSource text(ClassEntry classEntry, String text) {
 		return new DecompiledClassSource(classEntry, new SourceIndex(text));
 	}
 
+	/**
+	 * Remaps the obfuscated source. If this source was already remapped and none of the remapped names changed,
+	 * it is returned as is instead of building the same source and index again.
+	 */
 	public DecompiledClassSource remapSource(EnigmaProject project, Translator translator) {
+		// all tokens of an entry are remapped the same way, so each entry is only translated once
+		Map<Entry<?>, RemappedToken> renamableEntries = new HashMap<>();
+		Map<Entry<?>, RemappedToken> otherEntries = new HashMap<>();
+		List<RemappedToken> remappedTokens = new ArrayList<>();
+
+		for (Token token : obfuscatedIndex.referenceTokens()) {
+			EntryReference<Entry<?>, Entry<?>> reference = obfuscatedIndex.getReference(token);
+			boolean renamable = project.isRenamable(reference);
+			Entry<?> nameableEntry = reference.getNameableEntry();
+
+			if (nameableEntry instanceof LocalVariableEntry) {
+				// locals that reuse a slot are equal even though their names and types differ, so they can't share a result
+				remappedTokens.add(remapEntry(project, nameableEntry, renamable, translator));
+			} else {
+				Map<Entry<?>, RemappedToken> entries = renamable ? renamableEntries : otherEntries;
+				remappedTokens.add(entries.computeIfAbsent(nameableEntry, entry -> remapEntry(project, entry, renamable, translator)));
+			}
+		}
+
+		if (remappedTokens.equals(this.remappedTokens)) {
+			return this;
+		}
+
+		// the whole source is remapped again rather than splicing the changed names into the previous one, since the
+		// tokens after the first changed one move either way and the copy is linear in both cases
 		SourceRemapper remapper = new SourceRemapper(obfuscatedIndex.getSource(), obfuscatedIndex.referenceTokens());
 
 		TokenStore tokenStore = TokenStore.create(this.obfuscatedIndex);
-		SourceRemapper.Result remapResult = remapper.remap((token, movedToken) -> remapToken(tokenStore, project, token, movedToken, translator));
+		Iterator<RemappedToken> remappedTokenIterator = remappedTokens.iterator();
+		SourceRemapper.Result remapResult = remapper.remap((token, movedToken) -> {
+			RemappedToken remappedToken = remappedTokenIterator.next();
+
+			if (remappedToken.type() != null) {
+				tokenStore.add(remappedToken.type(), movedToken);
+			}
+
+			return remappedToken.name();
+		});
 		SourceIndex remappedIndex = obfuscatedIndex.remapTo(remapResult);
-		return new DecompiledClassSource(this.classEntry, this.obfuscatedIndex, remappedIndex, tokenStore);
+		return new DecompiledClassSource(this.classEntry, this.obfuscatedIndex, remappedIndex, tokenStore, remappedTokens);
 	}
 
-	private String remapToken(TokenStore target, EnigmaProject project, Token token, Token movedToken, Translator translator) {
-		EntryReference<Entry<?>, Entry<?>> reference = obfuscatedIndex.getReference(token);
-
-		Entry<?> entry = reference.getNameableEntry();
+	private RemappedToken remapEntry(EnigmaProject project, Entry<?> entry, boolean renamable, Translator translator) {
 		TranslateResult<Entry<?>> translatedEntry = translator.extendedTranslate(entry);
 
-		if (project.isRenamable(reference)) {
+		if (renamable) {
 			if (!translatedEntry.isObfuscated()) {
-				target.add(translatedEntry.getType(), movedToken);
-				return translatedEntry.getValue().getSourceRemapName();
+				return new RemappedToken(translatedEntry.getValue().getSourceRemapName(), translatedEntry.getType());
 			} else {
 				Optional<String> proposedName = proposeName(project, entry);
 
 				if (proposedName.isPresent()) {
-					target.add(RenamableTokenType.PROPOSED, movedToken);
-					return proposedName.get();
+					return new RemappedToken(proposedName.get(), RenamableTokenType.PROPOSED);
 				}
 
-				if (isUnobfuscated(project, entry)) {
-					target.add(RenamableTokenType.UNOBFUSCATED, movedToken);
-				} else {
-					target.add(RenamableTokenType.OBFUSCATED, movedToken);
-				}
+				RenamableTokenType type = isUnobfuscated(project, entry) ? RenamableTokenType.UNOBFUSCATED : RenamableTokenType.OBFUSCATED;
+				return new RemappedToken(generateDefaultName(translatedEntry.getValue()), type);
 			}
 		}
 
-		String defaultName = generateDefaultName(translatedEntry.getValue());
-
-		if (defaultName != null) {
-			return defaultName;
-		}
-
-		return null;
+		return new RemappedToken(generateDefaultName(translatedEntry.getValue()), null);
 	}
 
 	public static Optional<String> proposeName(EnigmaProject project, Entry<?> entry) {
@@ -142,35 +178,82 @@ public class DecompiledClassSource {
 	}
 
 	public int getObfuscatedOffset(int deobfOffset) {
-		return getOffset(remappedIndex, obfuscatedIndex, deobfOffset);
+		OffsetTable table = deobfToObfOffsets;
+
+		if (table == null) {
+			table = OffsetTable.create(remappedIndex, obfuscatedIndex);
+			deobfToObfOffsets = table;
+		}
+
+		return table.map(deobfOffset);
 	}
 
 	public int getDeobfuscatedOffset(int obfOffset) {
-		return getOffset(obfuscatedIndex, remappedIndex, obfOffset);
-	}
+		OffsetTable table = obfToDeobfOffsets;
 
-	private static int getOffset(SourceIndex fromIndex, SourceIndex toIndex, int fromOffset) {
-		int relativeOffset = 0;
+		if (table == null) {
+			table = OffsetTable.create(obfuscatedIndex, remappedIndex);
+			obfToDeobfOffsets = table;
+		}
+
+		return table.map(obfOffset);
+	}
 
-		Iterator<Token> fromTokenItr = fromIndex.referenceTokens().iterator();
-		Iterator<Token> toTokenItr = toIndex.referenceTokens().iterator();
+	@Override
+	public String toString() {
+		return remappedIndex.getSource();
+	}
 
-		while (fromTokenItr.hasNext() && toTokenItr.hasNext()) {
-			Token fromToken = fromTokenItr.next();
-			Token toToken = toTokenItr.next();
+	/**
+	 * @param name the name that replaces the token, or {@code null} to keep it
+	 * @param type how the token is highlighted, or {@code null} if it isn't
+	 */
+	private record RemappedToken(@Nullable String name, @Nullable RenamableTokenType type) {
+	}
 
-			if (fromToken.end > fromOffset) {
-				break;
+	/**
+	 * Translates offsets between two versions of a source with the same reference tokens. An offset moves like
+	 * the end of the last token before it, which is found with a binary search.
+	 *
+	 * @param fromEnds the largest end of the first {@code n + 1} tokens of the source to translate from at index
+	 * {@code n}, so that the tokens ending after an offset can be searched for even if tokens overlap
+	 * @param offsets how much the end of each token moves
+	 */
+	private record OffsetTable(int[] fromEnds, int[] offsets) {
+		private static OffsetTable create(SourceIndex fromIndex, SourceIndex toIndex) {
+			List<Integer> fromEnds = new ArrayList<>();
+			List<Integer> offsets = new ArrayList<>();
+			Iterator<Token> fromTokenItr = fromIndex.referenceTokens().iterator();
+			Iterator<Token> toTokenItr = toIndex.referenceTokens().iterator();
+			int maxEnd = Integer.MIN_VALUE;
+
+			while (fromTokenItr.hasNext() && toTokenItr.hasNext()) {
+				Token fromToken = fromTokenItr.next();
+				Token toToken = toTokenItr.next();
+				maxEnd = Math.max(maxEnd, fromToken.end);
+				fromEnds.add(maxEnd);
+				offsets.add(toToken.end - fromToken.end);
 			}
 
-			relativeOffset = toToken.end - fromToken.end;
+			return new OffsetTable(fromEnds.stream().mapToInt(Integer::intValue).toArray(), offsets.stream().mapToInt(Integer::intValue).toArray());
 		}
 
-		return fromOffset + relativeOffset;
-	}
+		private int map(int fromOffset) {
+			// find the first token that ends after the offset
+			int low = 0;
+			int high = fromEnds.length;
 
-	@Override
-	public String toString() {
-		return remappedIndex.getSource();
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+
+				if (fromEnds[middle] > fromOffset) {
+					high = middle;
+				} else {
+					low = middle + 1;
+				}
+			}
+
+			return low == 0 ? fromOffset : fromOffset + offsets[low - 1];
+		}
 	}
 }
@@ -1,5 +1,8 @@
 package cuchaz.enigma.source;
 
+import org.jetbrains.annotations.Nullable;
+
+import cuchaz.enigma.Enigma;
 import cuchaz.enigma.api.service.EnigmaService;
 import cuchaz.enigma.api.service.EnigmaServiceType;
 import cuchaz.enigma.classprovider.ClassProvider;
@@ -8,4 +11,21 @@ public interface DecompilerService extends EnigmaService {
 	EnigmaServiceType<DecompilerService> TYPE = EnigmaServiceType.create("decompiler");
 
 	Decompiler create(ClassProvider classProvider, SourceSettings settings);
+
+	/**
+	 * Returns a stable id for this decompiler, which lets {@link SourceCache} store its output across sessions.
+	 * Decompilers without an id are never cached, which is also what decompilers whose output depends on more
+	 * than the class and its javadocs should do.
+	 */
+	@Nullable
+	default String getId() {
+		return null;
+	}
+
+	/**
+	 * Returns the version of this decompiler. Cached output of a different version is not reused.
+	 */
+	default String getVersion() {
+		return Enigma.VERSION;
+	}
 }
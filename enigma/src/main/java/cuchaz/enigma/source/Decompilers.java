@@ -1,13 +1,60 @@
 package cuchaz.enigma.source;
 
+import java.security.CodeSource;
+import java.util.function.BiFunction;
+
+import com.strobel.decompiler.DecompilerSettings;
+import org.benf.cfr.reader.util.getopt.OptionsImpl;
+import org.jetbrains.java.decompiler.main.decompiler.BaseDecompiler;
+
+import cuchaz.enigma.Enigma;
+import cuchaz.enigma.classprovider.ClassProvider;
 import cuchaz.enigma.source.bytecode.BytecodeDecompiler;
 import cuchaz.enigma.source.cfr.CfrDecompiler;
 import cuchaz.enigma.source.procyon.ProcyonDecompiler;
 import cuchaz.enigma.source.vineflower.VineflowerDecompiler;
 
 public class Decompilers {
-	public static final DecompilerService VINEFLOWER = VineflowerDecompiler::new;
-	public static final DecompilerService CFR = CfrDecompiler::new;
-	public static final DecompilerService PROCYON = ProcyonDecompiler::new;
+	public static final DecompilerService VINEFLOWER = withId("enigma:vineflower", BaseDecompiler.class, VineflowerDecompiler::new);
+	public static final DecompilerService CFR = withId("enigma:cfr", OptionsImpl.class, CfrDecompiler::new);
+	public static final DecompilerService PROCYON = withId("enigma:procyon", DecompilerSettings.class, ProcyonDecompiler::new);
+	// not cached, since the bytecode is translated with all mappings
 	public static final DecompilerService BYTECODE = BytecodeDecompiler::new;
+
+	/**
+	 * @param libraryClass a class of the decompiler library, which identifies its version
+	 */
+	private static DecompilerService withId(String id, Class<?> libraryClass, BiFunction<ClassProvider, SourceSettings, Decompiler> factory) {
+		// the library can be upgraded without a new Enigma version
+		String version = Enigma.VERSION + "+" + getLibraryVersion(libraryClass);
+
+		return new DecompilerService() {
+			@Override
+			public Decompiler create(ClassProvider classProvider, SourceSettings settings) {
+				return factory.apply(classProvider, settings);
+			}
+
+			@Override
+			public String getId() {
+				return id;
+			}
+
+			@Override
+			public String getVersion() {
+				return version;
+			}
+		};
+	}
+
+	private static String getLibraryVersion(Class<?> libraryClass) {
+		String version = libraryClass.getPackage().getImplementationVersion();
+
+		if (version != null) {
+			return version;
+		}
+
+		// the jar names of dependencies contain their versions, while a shaded library is versioned with Enigma
+		CodeSource codeSource = libraryClass.getProtectionDomain().getCodeSource();
+		return codeSource != null && codeSource.getLocation() != null ? codeSource.getLocation().getPath() : "unknown";
+	}
 }
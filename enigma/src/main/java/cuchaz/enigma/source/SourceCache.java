@@ -0,0 +1,583 @@
+package cuchaz.enigma.source;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.ClassProvider;
+import cuchaz.enigma.config.ConfigPaths;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.mapping.tree.EntryTreeNode;
+import cuchaz.enigma.translation.representation.AccessFlags;
+import cuchaz.enigma.translation.representation.MethodDescriptor;
+import cuchaz.enigma.translation.representation.Signature;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
+import cuchaz.enigma.translation.representation.entry.ClassDefEntry;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldDefEntry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableDefEntry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
+import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.translation.representation.entry.ParentedEntry;
+
+/**
+ * Stores decompiled sources together with their token index on disk, so that a class which was decompiled
+ * in an earlier session can be shown again without running the decompiler.
+ *
+ * <p>Sources are keyed by the bytes of the class and its inner classes as the decompiler sees them, the id
+ * and version of the {@link DecompilerService}, the {@link SourceSettings} and the javadocs of the class.
+ * Decompilers without an id are never cached.
+ *
+ * <p>The cache is bounded by the total size of its files, and the least recently used ones are deleted once it
+ * grows past that size.
+ */
+public final class SourceCache {
+	private static final int MAGIC = 0x456E5352; // "EnSR"
+	private static final int FORMAT_VERSION = 1;
+	private static final String FILE_EXTENSION = ".src";
+
+	private static final int ENTRY_NULL = 0, ENTRY_CLASS = 1, ENTRY_CLASS_DEF = 2, ENTRY_FIELD = 3, ENTRY_FIELD_DEF = 4,
+			ENTRY_METHOD = 5, ENTRY_METHOD_DEF = 6, ENTRY_LOCAL_VARIABLE = 7, ENTRY_LOCAL_VARIABLE_DEF = 8;
+
+	/**
+	 * The default maximum size of the cache in bytes, which can be changed with the {@code enigma.sourceCacheMaxSize}
+	 * system property.
+	 */
+	public static final long DEFAULT_MAX_SIZE = Long.getLong("enigma.sourceCacheMaxSize", 512L * 1024 * 1024);
+
+	private final Path directory;
+	private final long maxSize;
+	// the size of the files written since the cache was last trimmed, see evict
+	private final AtomicLong writtenSize = new AtomicLong();
+	private volatile boolean trimmed;
+
+	public SourceCache(Path directory) {
+		this(directory, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize the size in bytes above which the least recently used cache files are deleted
+	 */
+	public SourceCache(Path directory, long maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Cache size cannot be negative: " + maxSize);
+		}
+
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the cache in the default location, or {@code null} if it was disabled with
+	 * {@code -Denigma.sourceCache=false}. The location can be changed with {@code -Denigma.sourceCacheDir}.
+	 */
+	@Nullable
+	public static SourceCache createDefault() {
+		if (!Boolean.parseBoolean(System.getProperty("enigma.sourceCache", "true"))) {
+			return null;
+		}
+
+		String directory = System.getProperty("enigma.sourceCacheDir");
+
+		if (directory != null) {
+			return new SourceCache(Path.of(directory));
+		}
+
+		return new SourceCache(ConfigPaths.getCachePathRoot().resolve("enigma").resolve("sources"));
+	}
+
+	/**
+	 * Wraps a decompiler so that its sources are read from this cache when possible, and stored in it
+	 * once they have been indexed. Sources are only decompiled when their text or index is needed.
+	 *
+	 * @param classProvider the class provider the decompiler reads from
+	 * @param index the index of the project, which tells which inner classes are part of a source
+	 * @return the wrapped decompiler, or the given one if the service has no id
+	 */
+	public Decompiler wrap(Decompiler decompiler, DecompilerService service, SourceSettings settings, ClassProvider classProvider, JarIndex index) {
+		String id = service.getId();
+
+		if (id == null) {
+			return decompiler;
+		}
+
+		MessageDigest digest = createDigest();
+		writeDigestString(digest, id);
+		writeDigestString(digest, service.getVersion());
+		digest.update((byte) ((settings.removeImports ? 1 : 0) | (settings.removeVariableFinal ? 2 : 0)));
+		return new CachingDecompiler(decompiler, digest.digest(), classProvider, index);
+	}
+
+	@Nullable
+	private byte[] load(byte[] key) {
+		Path path = getPath(key);
+
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+				return null;
+			}
+
+			byte[] storedKey = new byte[in.readUnsignedByte()];
+			in.readFully(storedKey);
+
+			if (!Arrays.equals(storedKey, key)) {
+				return null;
+			}
+
+			byte[] data = in.readAllBytes();
+
+			try {
+				// the modification time marks the file as recently used, see evict
+				Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+			} catch (IOException e) {
+				// only affects which files are evicted first
+			}
+
+			return data;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			System.err.println("Failed to read cached source " + path + ", decompiling again");
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores an encoded index under the given key. Failures are reported but not thrown, since the cache is optional.
+	 */
+	private void save(byte[] key, byte[] data) {
+		Path path = getPath(key);
+
+		try {
+			Files.createDirectories(path.getParent());
+			Path tempPath = Files.createTempFile(path.getParent(), "source", ".tmp");
+
+			try {
+				try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tempPath))) {
+					out.writeInt(MAGIC);
+					out.writeInt(FORMAT_VERSION);
+					out.writeByte(key.length);
+					out.write(key);
+					out.write(data);
+				}
+
+				// write to a temporary file first so that concurrent readers never see a partial file
+				Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tempPath);
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to write source cache file " + path);
+			e.printStackTrace();
+			return;
+		}
+
+		// listing every file of the cache is slow, so only trim it once per session and then after every
+		// sixteenth of its maximum size written
+		if (!trimmed || writtenSize.addAndGet(data.length) > maxSize / 16) {
+			evict(path);
+		}
+	}
+
+	/**
+	 * Deletes the least recently used cache files until the cache fits in its maximum size, never deleting the file
+	 * that was just written.
+	 */
+	private synchronized void evict(Path written) {
+		trimmed = true;
+		writtenSize.set(0);
+
+		List<CacheFile> files = new ArrayList<>();
+
+		try (Stream<Path> paths = Files.walk(directory, 2)) {
+			paths.filter(path -> path.getFileName().toString().endsWith(FILE_EXTENSION)).forEach(path -> {
+				try {
+					files.add(new CacheFile(path, Files.size(path), Files.getLastModifiedTime(path).toMillis()));
+				} catch (NoSuchFileException e) {
+					// deleted concurrently
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (IOException | UncheckedIOException e) {
+			System.err.println("Failed to list source cache directory " + directory);
+			e.printStackTrace();
+			return;
+		}
+
+		files.sort(Comparator.comparingLong(CacheFile::lastModified).reversed());
+		long size = 0;
+
+		for (CacheFile file : files) {
+			size += file.size;
+
+			if (size > maxSize && !file.path.equals(written)) {
+				try {
+					Files.deleteIfExists(file.path);
+				} catch (IOException e) {
+					System.err.println("Failed to evict source cache file " + file.path);
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private Path getPath(byte[] key) {
+		String name = HexFormat.of().formatHex(key);
+		// spread the files over subdirectories, since there is one per class
+		return directory.resolve(name.substring(0, 2)).resolve(name.substring(2) + FILE_EXTENSION);
+	}
+
+	private record CacheFile(Path path, long size, long lastModified) {
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// Algorithm guaranteed to be supported
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void writeDigestString(MessageDigest digest, String value) {
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	static void writeString(DataOutput out, @Nullable String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	@Nullable
+	static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+
+		if (length < 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static void writeEntry(DataOutput out, @Nullable Entry<?> entry) throws IOException {
+		if (entry == null) {
+			out.writeByte(ENTRY_NULL);
+			return;
+		}
+
+		// compare the exact classes, since a subclass may carry information that would be lost
+		Class<?> type = entry.getClass();
+
+		if (type == ClassEntry.class) {
+			out.writeByte(ENTRY_CLASS);
+		} else if (type == ClassDefEntry.class) {
+			out.writeByte(ENTRY_CLASS_DEF);
+		} else if (type == FieldEntry.class) {
+			out.writeByte(ENTRY_FIELD);
+		} else if (type == FieldDefEntry.class) {
+			out.writeByte(ENTRY_FIELD_DEF);
+		} else if (type == MethodEntry.class) {
+			out.writeByte(ENTRY_METHOD);
+		} else if (type == MethodDefEntry.class) {
+			out.writeByte(ENTRY_METHOD_DEF);
+		} else if (type == LocalVariableEntry.class) {
+			out.writeByte(ENTRY_LOCAL_VARIABLE);
+		} else if (type == LocalVariableDefEntry.class) {
+			out.writeByte(ENTRY_LOCAL_VARIABLE_DEF);
+		} else {
+			throw new IOException("Don't know how to store entry of type " + type.getSimpleName());
+		}
+
+		ParentedEntry<?> parentedEntry = (ParentedEntry<?>) entry;
+		writeEntry(out, parentedEntry.getParent());
+		writeString(out, parentedEntry.getName());
+		writeString(out, parentedEntry.getJavadocs());
+
+		if (entry instanceof ClassDefEntry classDef) {
+			writeString(out, classDef.getSignature().getSignature());
+			out.writeInt(classDef.getAccess().getFlags());
+			writeEntry(out, classDef.getSuperClass());
+			out.writeInt(classDef.getInterfaces().length);
+
+			for (ClassEntry interfaceEntry : classDef.getInterfaces()) {
+				writeEntry(out, interfaceEntry);
+			}
+		} else if (entry instanceof FieldEntry field) {
+			writeString(out, field.getDesc().toString());
+
+			if (field instanceof FieldDefEntry fieldDef) {
+				writeString(out, fieldDef.getSignature().getSignature());
+				out.writeInt(fieldDef.getAccess().getFlags());
+			}
+		} else if (entry instanceof MethodEntry method) {
+			writeString(out, method.getDesc().toString());
+
+			if (method instanceof MethodDefEntry methodDef) {
+				writeString(out, methodDef.getSignature().getSignature());
+				out.writeInt(methodDef.getAccess().getFlags());
+			}
+		} else if (entry instanceof LocalVariableEntry localVariable) {
+			out.writeInt(localVariable.getIndex());
+			out.writeBoolean(localVariable.isArgument());
+
+			if (localVariable instanceof LocalVariableDefEntry localVariableDef) {
+				TypeDescriptor desc = localVariableDef.getDesc();
+				writeString(out, desc != null ? desc.toString() : null);
+			}
+		}
+	}
+
+	@Nullable
+	static Entry<?> readEntry(DataInput in) throws IOException {
+		int type = in.readUnsignedByte();
+
+		if (type == ENTRY_NULL) {
+			return null;
+		}
+
+		Entry<?> parent = readEntry(in);
+		String name = readString(in);
+		String javadocs = readString(in);
+
+		return switch (type) {
+		case ENTRY_CLASS -> new ClassEntry((ClassEntry) parent, name, javadocs);
+		case ENTRY_CLASS_DEF -> {
+			Signature signature = Signature.createSignature(readString(in));
+			AccessFlags access = new AccessFlags(in.readInt());
+			ClassEntry superClass = (ClassEntry) readEntry(in);
+			ClassEntry[] interfaces = new ClassEntry[in.readInt()];
+
+			for (int i = 0; i < interfaces.length; i++) {
+				interfaces[i] = (ClassEntry) readEntry(in);
+			}
+
+			yield new ClassDefEntry((ClassEntry) parent, name, signature, access, superClass, interfaces, javadocs);
+		}
+		case ENTRY_FIELD -> new FieldEntry((ClassEntry) parent, name, new TypeDescriptor(readString(in)), javadocs);
+		case ENTRY_FIELD_DEF -> new FieldDefEntry((ClassEntry) parent, name, new TypeDescriptor(readString(in)), Signature.createTypedSignature(readString(in)), new AccessFlags(in.readInt()), javadocs);
+		case ENTRY_METHOD -> new MethodEntry((ClassEntry) parent, name, new MethodDescriptor(readString(in)), javadocs);
+		case ENTRY_METHOD_DEF -> new MethodDefEntry((ClassEntry) parent, name, new MethodDescriptor(readString(in)), Signature.createSignature(readString(in)), new AccessFlags(in.readInt()), javadocs);
+		case ENTRY_LOCAL_VARIABLE -> new LocalVariableEntry((MethodEntry) parent, in.readInt(), name, in.readBoolean(), javadocs);
+		case ENTRY_LOCAL_VARIABLE_DEF -> {
+			int index = in.readInt();
+			boolean parameter = in.readBoolean();
+			String desc = readString(in);
+			yield new LocalVariableDefEntry((MethodEntry) parent, index, name, parameter, desc != null ? new TypeDescriptor(desc) : null, javadocs);
+		}
+		default -> throw new IOException("Unknown entry type " + type + " in source cache");
+		};
+	}
+
+	private final class CachingDecompiler implements Decompiler {
+		private final Decompiler decompiler;
+		private final byte[] decompilerKey;
+		private final ClassProvider classProvider;
+		private final JarIndex index;
+
+		private CachingDecompiler(Decompiler decompiler, byte[] decompilerKey, ClassProvider classProvider, JarIndex index) {
+			this.decompiler = decompiler;
+			this.decompilerKey = decompilerKey;
+			this.classProvider = classProvider;
+			this.index = index;
+		}
+
+		@Override
+		public Source getSource(String className, @Nullable EntryRemapper remapper) {
+			if (remapper == null) {
+				return new CachedSource(this, className, null, () -> decompiler.getSource(className, null));
+			}
+
+			// decompile without javadocs first, so that the uncommented source can be shared like with other sources
+			return getSource(className, null).withJavadocs(remapper);
+		}
+
+		/**
+		 * Computes the key of a source, or returns {@code null} if one of its classes can't be found.
+		 */
+		@Nullable
+		private byte[] computeKey(String className, @Nullable EntryRemapper remapper) {
+			MessageDigest digest = createDigest();
+			digest.update(decompilerKey);
+
+			List<ClassEntry> classes = new ArrayList<>();
+			collectClasses(new ClassEntry(className), classes);
+			classes.sort(Comparator.comparing(ClassEntry::getFullName));
+
+			for (ClassEntry classEntry : classes) {
+				byte[] bytes = classProvider.getBytes(classEntry.getFullName());
+
+				if (bytes == null) {
+					return null;
+				}
+
+				writeDigestString(digest, classEntry.getFullName());
+				digest.update(bytes);
+			}
+
+			if (remapper != null) {
+				// only the javadocs of the class and its members end up in the source
+				digest.update((byte) 1);
+				EntryTreeNode<EntryMapping> node = remapper.getObfToDeobf().findNode(new ClassEntry(className));
+
+				if (node != null) {
+					Map<String, String> javadocs = new TreeMap<>();
+
+					for (EntryTreeNode<EntryMapping> child : node.getNodesRecursively()) {
+						EntryMapping mapping = child.getValue();
+
+						if (mapping != null && mapping.javadoc() != null) {
+							javadocs.put(child.getEntry().toString(), mapping.javadoc());
+						}
+					}
+
+					for (Map.Entry<String, String> entry : javadocs.entrySet()) {
+						writeDigestString(digest, entry.getKey());
+						writeDigestString(digest, entry.getValue());
+					}
+				}
+			}
+
+			return digest.digest();
+		}
+
+		private void collectClasses(ClassEntry classEntry, List<ClassEntry> classes) {
+			classes.add(classEntry);
+
+			for (ParentedEntry<?> child : index.getChildrenByClass().getOrDefault(classEntry, List.of())) {
+				if (child instanceof ClassEntry innerClass) {
+					collectClasses(innerClass, classes);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A source that is only decompiled when it isn't in the cache. Each call to {@link #index()} returns a
+	 * new index, since callers resolve the references of the index in place.
+	 */
+	private final class CachedSource implements Source {
+		private final CachingDecompiler decompiler;
+		private final String className;
+		@Nullable
+		private final EntryRemapper remapper;
+		private final Supplier<Source> sourceFactory;
+		private Source source;
+		private byte[] data;
+		private boolean loaded;
+
+		private CachedSource(CachingDecompiler decompiler, String className, @Nullable EntryRemapper remapper, Supplier<Source> sourceFactory) {
+			this.decompiler = decompiler;
+			this.className = className;
+			this.remapper = remapper;
+			this.sourceFactory = sourceFactory;
+		}
+
+		@Override
+		public String asString() {
+			return index().getSource();
+		}
+
+		@Override
+		public Source withJavadocs(EntryRemapper remapper) {
+			return new CachedSource(decompiler, className, remapper, () -> getSource().withJavadocs(remapper));
+		}
+
+		@Override
+		public synchronized SourceIndex index() {
+			if (!loaded) {
+				loaded = true;
+				byte[] key = decompiler.computeKey(className, remapper);
+				data = key != null ? load(key) : null;
+
+				if (data == null) {
+					SourceIndex index = getSource().index();
+
+					if (key != null) {
+						data = encode(index);
+
+						if (data != null) {
+							save(key, data);
+						}
+					}
+
+					return index;
+				}
+			}
+
+			if (data != null) {
+				try {
+					return SourceIndex.read(new DataInputStream(new ByteArrayInputStream(data)));
+				} catch (IOException | RuntimeException e) {
+					System.err.println("Failed to read cached source of " + className + ", decompiling again");
+					e.printStackTrace();
+					data = null;
+				}
+			}
+
+			return getSource().index();
+		}
+
+		private synchronized Source getSource() {
+			if (source == null) {
+				source = sourceFactory.get();
+			}
+
+			return source;
+		}
+
+		@Nullable
+		private byte[] encode(SourceIndex index) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+			try (DataOutputStream out = new DataOutputStream(bytes)) {
+				index.write(out);
+			} catch (IOException e) {
+				// the index contains something that can't be stored, so the class is simply decompiled every time
+				return null;
+			}
+
+			return bytes.toByteArray();
+		}
+	}
+}
@@ -1,8 +1,13 @@
 package cuchaz.enigma.source;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -10,13 +15,15 @@ import java.util.TreeMap;
 import org.jetbrains.annotations.Nullable;
 
 import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.analysis.ReferenceTargetType;
 import cuchaz.enigma.translation.mapping.EntryResolver;
 import cuchaz.enigma.translation.mapping.ResolutionStrategy;
 import cuchaz.enigma.translation.representation.entry.Entry;
 
 public class SourceIndex {
 	private String source;
-	private List<Integer> lineOffsets;
+	// the offset of the start of each line, in ascending order
+	private int[] lineOffsets;
 	private final TreeMap<Token, EntryReference<Entry<?>, Entry<?>>> tokenToReference;
 	private final Map<EntryReference<Entry<?>, Entry<?>>, Collection<Token>> referenceToTokens;
 	private final TreeMap<Token, Entry<?>> tokenToDeclaration;
@@ -36,14 +43,20 @@ public class SourceIndex {
 
 	public void setSource(String source) {
 		this.source = source;
-		lineOffsets = new ArrayList<>();
-		lineOffsets.add(0);
+		int[] lineOffsets = new int[16];
+		int lineCount = 1;
 
 		for (int i = 0; i < this.source.length(); i++) {
 			if (this.source.charAt(i) == '\n') {
-				lineOffsets.add(i + 1);
+				if (lineCount == lineOffsets.length) {
+					lineOffsets = Arrays.copyOf(lineOffsets, lineCount * 2);
+				}
+
+				lineOffsets[lineCount++] = i + 1;
 			}
 		}
+
+		this.lineOffsets = Arrays.copyOf(lineOffsets, lineCount);
 	}
 
 	public String getSource() {
@@ -51,25 +64,17 @@ public class SourceIndex {
 	}
 
 	public int getLineNumber(int position) {
-		int line = 0;
-
-		for (int offset : lineOffsets) {
-			if (offset > position) {
-				break;
-			}
-
-			line++;
-		}
-
-		return line;
+		// the number of lines starting at or before the position
+		int index = Arrays.binarySearch(lineOffsets, position);
+		return index >= 0 ? index + 1 : -index - 1;
 	}
 
 	public int getColumnNumber(int position) {
-		return position - lineOffsets.get(getLineNumber(position) - 1) + 1;
+		return position - lineOffsets[getLineNumber(position) - 1] + 1;
 	}
 
 	public int getPosition(int line, int column) {
-		return lineOffsets.get(line - 1) + column - 1;
+		return lineOffsets[line - 1] + column - 1;
 	}
 
 	public Iterable<Entry<?>> declarations() {
@@ -185,4 +190,148 @@ public class SourceIndex {
 
 		return remapped;
 	}
+
+	/**
+	 * Writes this index in the format read by {@link #read(DataInput)}. Tokens and references are written once
+	 * and referred to by id, so that the maps share instances again after reading.
+	 *
+	 * @throws IOException if the index contains references that can't be stored
+	 */
+	void write(DataOutput out) throws IOException {
+		SourceCache.writeString(out, source);
+
+		Map<Token, Integer> tokenIds = new HashMap<>();
+		List<Token> tokens = new ArrayList<>();
+		// references are compared by identity, since equal references may differ in their source names, and equal
+		// local variables in their names and types
+		Map<EntryReference<Entry<?>, Entry<?>>, Integer> referenceIds = new IdentityHashMap<>();
+		List<EntryReference<Entry<?>, Entry<?>>> references = new ArrayList<>();
+
+		for (Map.Entry<Token, EntryReference<Entry<?>, Entry<?>>> entry : tokenToReference.entrySet()) {
+			addId(tokenIds, tokens, entry.getKey());
+			addId(referenceIds, references, entry.getValue());
+		}
+
+		for (Map.Entry<EntryReference<Entry<?>, Entry<?>>, Collection<Token>> entry : referenceToTokens.entrySet()) {
+			addId(referenceIds, references, entry.getKey());
+			entry.getValue().forEach(token -> addId(tokenIds, tokens, token));
+		}
+
+		tokenToDeclaration.keySet().forEach(token -> addId(tokenIds, tokens, token));
+		declarationToToken.values().forEach(token -> addId(tokenIds, tokens, token));
+
+		out.writeInt(tokens.size());
+
+		for (Token token : tokens) {
+			out.writeInt(token.start);
+			out.writeInt(token.end);
+			SourceCache.writeString(out, token.text);
+		}
+
+		out.writeInt(references.size());
+
+		for (EntryReference<Entry<?>, Entry<?>> reference : references) {
+			if (reference.targetType.getKind() != ReferenceTargetType.Kind.NONE) {
+				throw new IOException("Can't store reference with target type " + reference.targetType);
+			}
+
+			SourceCache.writeEntry(out, reference.entry);
+			SourceCache.writeEntry(out, reference.context);
+			out.writeBoolean(reference.isDeclaration());
+			out.writeBoolean(reference.isNamed());
+		}
+
+		out.writeInt(tokenToReference.size());
+
+		for (Map.Entry<Token, EntryReference<Entry<?>, Entry<?>>> entry : tokenToReference.entrySet()) {
+			out.writeInt(tokenIds.get(entry.getKey()));
+			out.writeInt(referenceIds.get(entry.getValue()));
+		}
+
+		out.writeInt(referenceToTokens.size());
+
+		for (Map.Entry<EntryReference<Entry<?>, Entry<?>>, Collection<Token>> entry : referenceToTokens.entrySet()) {
+			out.writeInt(referenceIds.get(entry.getKey()));
+			out.writeInt(entry.getValue().size());
+
+			for (Token token : entry.getValue()) {
+				out.writeInt(tokenIds.get(token));
+			}
+		}
+
+		out.writeInt(declarationToToken.size());
+
+		for (Map.Entry<Entry<?>, Token> entry : declarationToToken.entrySet()) {
+			SourceCache.writeEntry(out, entry.getKey());
+			out.writeInt(tokenIds.get(entry.getValue()));
+		}
+
+		out.writeInt(tokenToDeclaration.size());
+
+		for (Map.Entry<Token, Entry<?>> entry : tokenToDeclaration.entrySet()) {
+			out.writeInt(tokenIds.get(entry.getKey()));
+			SourceCache.writeEntry(out, entry.getValue());
+		}
+	}
+
+	private static <T> void addId(Map<T, Integer> ids, List<T> values, T value) {
+		if (ids.putIfAbsent(value, values.size()) == null) {
+			values.add(value);
+		}
+	}
+
+	static SourceIndex read(DataInput in) throws IOException {
+		SourceIndex index = new SourceIndex(SourceCache.readString(in));
+
+		Token[] tokens = new Token[in.readInt()];
+
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = new Token(in.readInt(), in.readInt(), SourceCache.readString(in));
+		}
+
+		List<EntryReference<Entry<?>, Entry<?>>> references = new ArrayList<>();
+		int referenceCount = in.readInt();
+
+		for (int i = 0; i < referenceCount; i++) {
+			Entry<?> entry = SourceCache.readEntry(in);
+			Entry<?> context = SourceCache.readEntry(in);
+			boolean declaration = in.readBoolean();
+			String sourceName = in.readBoolean() ? entry.getName() : null;
+			references.add(declaration ? EntryReference.declaration(entry, sourceName) : new EntryReference<>(entry, sourceName, context));
+		}
+
+		int size = in.readInt();
+
+		for (int i = 0; i < size; i++) {
+			index.tokenToReference.put(tokens[in.readInt()], references.get(in.readInt()));
+		}
+
+		size = in.readInt();
+
+		for (int i = 0; i < size; i++) {
+			EntryReference<Entry<?>, Entry<?>> reference = references.get(in.readInt());
+			int tokenCount = in.readInt();
+			List<Token> referenceTokens = new ArrayList<>(tokenCount);
+
+			for (int j = 0; j < tokenCount; j++) {
+				referenceTokens.add(tokens[in.readInt()]);
+			}
+
+			index.referenceToTokens.put(reference, referenceTokens);
+		}
+
+		size = in.readInt();
+
+		for (int i = 0; i < size; i++) {
+			index.declarationToToken.put(SourceCache.readEntry(in), tokens[in.readInt()]);
+		}
+
+		size = in.readInt();
+
+		for (int i = 0; i < size; i++) {
+			index.tokenToDeclaration.put(tokens[in.readInt()], SourceCache.readEntry(in));
+		}
+
+		return index;
+	}
 }
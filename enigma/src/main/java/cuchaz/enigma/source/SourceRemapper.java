@@ -12,10 +12,15 @@ public class SourceRemapper {
 		this.tokens = tokens;
 	}
 
+	/**
+	 * Remaps the tokens, which have to be in source order and must not overlap. The source is copied once
+	 * between the renamed tokens instead of shifting its remainder for every rename.
+	 */
 	public Result remap(Remapper remapper) {
-		StringBuffer remappedSource = new StringBuffer(source);
+		StringBuilder remappedSource = new StringBuilder(source.length() + source.length() / 8);
 		Map<Token, Token> remappedTokens = new HashMap<>();
 
+		int copiedEnd = 0;
 		int accumulatedOffset = 0;
 
 		for (Token token : tokens) {
@@ -25,7 +30,10 @@ public class SourceRemapper {
 
 			if (remappedName != null) {
 				accumulatedOffset += movedToken.getRenameOffset(remappedName);
-				movedToken.rename(remappedSource, remappedName);
+				remappedSource.append(source, copiedEnd, token.start).append(remappedName);
+				copiedEnd = token.end;
+				movedToken.text = remappedName;
+				movedToken.end = movedToken.start + remappedName.length();
 			}
 
 			if (!token.equals(movedToken)) {
@@ -33,6 +41,7 @@ public class SourceRemapper {
 			}
 		}
 
+		remappedSource.append(source, copiedEnd, source.length());
 		return new Result(remappedSource.toString(), remappedTokens);
 	}
 
@@ -1,9 +1,10 @@
 package cuchaz.enigma.source;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.TreeSet;
@@ -14,6 +15,8 @@ public final class TokenStore {
 	private final NavigableSet<Token> tokens;
 	private final Map<RenamableTokenType, NavigableSet<Token>> byType;
 	private final String obfSource;
+	// built when positions are first mapped, after all tokens were added
+	private volatile Positions positions;
 
 	private TokenStore(NavigableSet<Token> tokens, Map<RenamableTokenType, NavigableSet<Token>> byType, String obfSource) {
 		this.tokens = tokens;
@@ -38,43 +41,79 @@ public final class TokenStore {
 	public void add(RenamableTokenType type, Token token) {
 		this.tokens.add(token);
 		this.byType.get(type).add(token);
+		this.positions = null;
 	}
 
 	public boolean isCompatible(TokenStore other) {
 		return this.obfSource != null && other.obfSource != null && this.obfSource.equals(other.obfSource) && this.tokens.size() == other.tokens.size();
 	}
 
+	/**
+	 * Maps a position in the source of this store to the source of another store of the same obfuscated
+	 * source, by shifting it by the change in length of the tokens before it. Tokens must not overlap.
+	 */
 	public int mapPosition(TokenStore to, int position) {
 		if (!this.isCompatible(to)) {
 			return 0;
 		}
 
-		int newPos = position;
-		Iterator<Token> thisIter = this.tokens.iterator();
-		Iterator<Token> toIter = to.tokens.iterator();
+		Positions from = this.getPositions();
+		Positions target = to.getPositions();
+		int count = from.countStartingAtOrBefore(position);
 
-		while (thisIter.hasNext()) {
-			Token token = thisIter.next();
-			Token newToken = toIter.next();
+		if (count == 0) {
+			return position;
+		}
 
-			if (position < token.start) {
-				break;
-			}
+		Token token = from.tokens[count - 1];
+		Token newToken = target.tokens[count - 1];
 
-			// if we're inside the token and the text changed,
-			// snap the cursor to the beginning
-			if (!token.text.equals(newToken.text) && position < token.end) {
-				newPos = newToken.start;
-				break;
-			}
+		// if we're inside the token and the text changed,
+		// snap the cursor to the beginning
+		if (!token.text.equals(newToken.text) && position < token.end) {
+			return newToken.start;
+		}
+
+		return position + target.lengthSums[count] - from.lengthSums[count];
+	}
+
+	private Positions getPositions() {
+		Positions positions = this.positions;
 
-			newPos += newToken.length() - token.length();
+		if (positions == null) {
+			positions = Positions.create(tokens);
+			this.positions = positions;
 		}
 
-		return newPos;
+		return positions;
 	}
 
 	public Map<RenamableTokenType, NavigableSet<Token>> getByType() {
 		return byType;
 	}
+
+	/**
+	 * @param tokens the tokens in source order
+	 * @param starts the start of each token
+	 * @param lengthSums the total length of the first {@code n} tokens at index {@code n}
+	 */
+	private record Positions(Token[] tokens, int[] starts, int[] lengthSums) {
+		private static Positions create(Collection<Token> tokenSet) {
+			Token[] tokens = tokenSet.toArray(new Token[0]);
+			int[] starts = new int[tokens.length];
+			int[] lengthSums = new int[tokens.length + 1];
+
+			for (int i = 0; i < tokens.length; i++) {
+				starts[i] = tokens[i].start;
+				lengthSums[i + 1] = lengthSums[i] + tokens[i].length();
+			}
+
+			return new Positions(tokens, starts, lengthSums);
+		}
+
+		private int countStartingAtOrBefore(int position) {
+			int index = Arrays.binarySearch(starts, position);
+			return index >= 0 ? index + 1 : -index - 1;
+		}
+	}
 }
@@ -1,5 +1,7 @@
 package cuchaz.enigma.source.procyon;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.strobel.assembler.metadata.ITypeLoader;
 import com.strobel.assembler.metadata.MetadataSystem;
 import com.strobel.assembler.metadata.TypeDefinition;
@@ -12,7 +14,6 @@ import com.strobel.decompiler.languages.java.ast.AstBuilder;
 import com.strobel.decompiler.languages.java.ast.CompilationUnit;
 import com.strobel.decompiler.languages.java.ast.InsertParenthesesVisitor;
 import org.jetbrains.annotations.Nullable;
-import org.objectweb.asm.tree.ClassNode;
 
 import cuchaz.enigma.classprovider.ClassProvider;
 import cuchaz.enigma.source.Decompiler;
@@ -27,30 +28,36 @@ import cuchaz.enigma.source.procyon.transformers.ObfuscatedEnumSwitchRewriterTra
 import cuchaz.enigma.source.procyon.transformers.RemoveObjectCasts;
 import cuchaz.enigma.source.procyon.transformers.VarargsFixer;
 import cuchaz.enigma.translation.mapping.EntryRemapper;
-import cuchaz.enigma.utils.AsmUtil;
 
 public class ProcyonDecompiler implements Decompiler {
+	/**
+	 * The number of types that may be loaded before the metadata system, which never forgets a type, is
+	 * replaced with an empty one. Can be changed with the {@code enigma.procyonMaxTypes} system property.
+	 */
+	private static final int MAX_LOADED_TYPES = Integer.getInteger("enigma.procyonMaxTypes", 20000);
+
 	private final SourceSettings settings;
 	private final DecompilerSettings decompilerSettings;
-	private final MetadataSystem metadataSystem;
+	private final ITypeLoader typeLoader;
+	private final AtomicInteger loadedTypes = new AtomicInteger();
+	private volatile MetadataSystem metadataSystem;
 
 	public ProcyonDecompiler(ClassProvider classProvider, SourceSettings settings) {
-		ITypeLoader typeLoader = (name, buffer) -> {
-			ClassNode node = classProvider.get(name);
+		typeLoader = (name, buffer) -> {
+			byte[] data = classProvider.getBytes(name);
 
-			if (node == null) {
+			if (data == null) {
 				return false;
 			}
 
-			byte[] data = AsmUtil.nodeToBytes(node);
+			loadedTypes.incrementAndGet();
 			buffer.reset(data.length);
 			System.arraycopy(data, 0, buffer.array(), buffer.position(), data.length);
 			buffer.position(0);
 			return true;
 		};
 
-		metadataSystem = new MetadataSystem(typeLoader);
-		metadataSystem.setEagerMethodLoadingEnabled(true);
+		metadataSystem = createMetadataSystem(typeLoader);
 
 		decompilerSettings = DecompilerSettings.javaDefaults();
 		decompilerSettings.setMergeVariables(getSystemPropertyAsBoolean("enigma.mergeVariables", true));
@@ -68,9 +75,29 @@ public class ProcyonDecompiler implements Decompiler {
 		this.settings = settings;
 	}
 
+	private static MetadataSystem createMetadataSystem(ITypeLoader typeLoader) {
+		MetadataSystem metadataSystem = new MetadataSystem(typeLoader);
+		metadataSystem.setEagerMethodLoadingEnabled(true);
+		return metadataSystem;
+	}
+
+	private MetadataSystem getMetadataSystem() {
+		if (loadedTypes.get() > MAX_LOADED_TYPES) {
+			synchronized (this) {
+				if (loadedTypes.get() > MAX_LOADED_TYPES) {
+					// decompiles that are still running keep using the old metadata system
+					metadataSystem = createMetadataSystem(typeLoader);
+					loadedTypes.set(0);
+				}
+			}
+		}
+
+		return metadataSystem;
+	}
+
 	@Override
 	public Source getSource(String className, @Nullable EntryRemapper remapper) {
-		TypeReference type = metadataSystem.lookupType(className);
+		TypeReference type = getMetadataSystem().lookupType(className);
 
 		if (type == null) {
 			throw new Error(String.format("Unable to find desc: %s", className));
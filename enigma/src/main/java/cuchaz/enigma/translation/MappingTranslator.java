@@ -9,20 +9,40 @@ import cuchaz.enigma.translation.mapping.EntryResolver;
 public class MappingTranslator implements Translator {
 	private final EntryMap<EntryMapping> mappings;
 	private final EntryResolver resolver;
+	@Nullable
+	private final TranslationCache cache;
 
 	public MappingTranslator(EntryMap<EntryMapping> mappings, EntryResolver resolver) {
+		this(mappings, resolver, null);
+	}
+
+	public MappingTranslator(EntryMap<EntryMapping> mappings, EntryResolver resolver, @Nullable TranslationCache cache) {
 		this.mappings = mappings;
 		this.resolver = resolver;
+		this.cache = cache;
 	}
 
 	@Nullable
-	@SuppressWarnings("unchecked")
 	@Override
 	public <T extends Translatable> TranslateResult<T> extendedTranslate(T translatable) {
 		if (translatable == null) {
 			return null;
 		}
 
+		if (cache != null) {
+			return cache.translate(translatable, this::translateUncached);
+		}
+
+		return translateUncached(translatable);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Translatable> TranslateResult<T> translateUncached(T translatable) {
 		return (TranslateResult<T>) translatable.extendedTranslate(this, resolver, mappings);
 	}
+
+	@Nullable
+	public TranslationCache getCache() {
+		return cache;
+	}
 }
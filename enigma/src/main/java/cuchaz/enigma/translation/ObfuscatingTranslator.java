@@ -3,7 +3,10 @@ package cuchaz.enigma.translation;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import org.jetbrains.annotations.Nullable;
 
@@ -22,7 +25,14 @@ import cuchaz.enigma.translation.representation.entry.ParentedEntry;
 public class ObfuscatingTranslator implements Translator {
 	private final JarIndex jarIndex;
 
+	// deobfuscated classes to obfuscated classes, and the other way around
+	private final Map<ClassEntry, ClassEntry> obfClasses = new ConcurrentHashMap<>();
+	private final Map<ClassEntry, ClassEntry> deobfClasses = new ConcurrentHashMap<>();
+	// fields and methods keyed by their obfuscated owner and descriptor and their deobfuscated name, to their obfuscated names
+	private final Map<MemberKey, String> obfMemberNames = new ConcurrentHashMap<>();
+	// the mappings of the other entries
 	private final EntryTree<EntryMapping> inverseMappings = new HashEntryTree<>();
+	private Map<ClassEntry, List<ClassEntry>> innerClasses = Map.of();
 	private final EntryResolver resolver = new ObfuscatingResolver();
 
 	public ObfuscatingTranslator(JarIndex jarIndex) {
@@ -37,34 +47,82 @@ public class ObfuscatingTranslator implements Translator {
 			return null;
 		}
 
-		if (translatable instanceof FieldEntry || translatable instanceof MethodEntry) {
+		if (translatable instanceof ClassEntry deobfClass) {
+			ClassEntry obfClass = obfClasses.get(deobfClass);
+
+			if (obfClass != null) {
+				return TranslateResult.deobfuscated((T) obfClass);
+			}
+		} else if (translatable instanceof FieldEntry || translatable instanceof MethodEntry) {
 			ParentedEntry<ClassEntry> key = obfOwnerAndDesc((ParentedEntry<ClassEntry>) translatable);
-			EntryMapping mapping = inverseMappings.get(key);
-			return mapping == null ? TranslateResult.obfuscated((T) key) : TranslateResult.deobfuscated((T) key.withName(mapping.targetName()));
+			String obfName = obfMemberNames.get(MemberKey.of(key));
+			return obfName == null ? TranslateResult.obfuscated((T) key) : TranslateResult.deobfuscated((T) key.withName(obfName));
 		}
 
 		return (TranslateResult<T>) translatable.extendedTranslate(this, resolver, inverseMappings);
 	}
 
+	/**
+	 * Rebuilds the inverse mappings of all classes, fields and methods of the jar in parallel.
+	 */
 	public void refreshAll(Translator deobfuscator) {
+		obfClasses.clear();
+		deobfClasses.clear();
+		obfMemberNames.clear();
 		inverseMappings.clear();
 
-		for (ClassEntry clazz : jarIndex.getEntryIndex().getClasses()) {
-			inverseMappings.insert(deobfuscator.extendedTranslate(clazz).getValue(), new EntryMapping(clazz.getName()));
+		Collection<ClassEntry> classes = jarIndex.getEntryIndex().getClasses();
+		innerClasses = classes.stream().filter(ClassEntry::isInnerClass).collect(Collectors.groupingBy(ClassEntry::getOuterClass));
+
+		// the members are keyed by their obfuscated owners and descriptors, so the classes have to be mapped first
+		classes.parallelStream().forEach(clazz -> putClass(clazz, deobfuscator.extendedTranslate(clazz).getValue()));
+		jarIndex.getEntryIndex().getFields().parallelStream().forEach(field -> putMember(field, deobfuscator.extendedTranslate(field).getValue()));
+		jarIndex.getEntryIndex().getMethods().parallelStream().forEach(method -> putMember(method, deobfuscator.extendedTranslate(method).getValue()));
+	}
+
+	/**
+	 * Updates the inverse mapping of an obfuscated entry after it was renamed. Renaming a class also moves its inner
+	 * classes, while the fields and methods are unaffected since they are keyed by their obfuscated owners.
+	 */
+	@SuppressWarnings("unchecked")
+	public void refreshName(Entry<?> entry, String oldDeobfName, String newDeobfName) {
+		if (entry instanceof ClassEntry obfClass) {
+			ClassEntry obfOuterClass = obfClass.getOuterClass();
+			ClassEntry deobfOuterClass = obfOuterClass == null ? null : deobfClasses.getOrDefault(obfOuterClass, obfOuterClass);
+			putClass(obfClass, new ClassEntry(deobfOuterClass, newDeobfName));
+		} else if (entry instanceof FieldEntry || entry instanceof MethodEntry) {
+			ParentedEntry<ClassEntry> member = (ParentedEntry<ClassEntry>) entry;
+			obfMemberNames.remove(MemberKey.of(member.withName(oldDeobfName)));
+			obfMemberNames.put(MemberKey.of(member.withName(newDeobfName)), entry.getName());
+		} else {
+			inverseMappings.remove(entry.withName(oldDeobfName));
+			inverseMappings.insert(entry.withName(newDeobfName), new EntryMapping(entry.getName()));
 		}
+	}
 
-		for (FieldEntry field : jarIndex.getEntryIndex().getFields()) {
-			inverseMappings.insert(obfOwnerAndDesc(deobfuscator.extendedTranslate(field).getValue()), new EntryMapping(field.getName()));
+	private void putClass(ClassEntry obfClass, ClassEntry deobfClass) {
+		ClassEntry previous = deobfClasses.put(obfClass, deobfClass);
+
+		if (previous != null) {
+			obfClasses.remove(previous, obfClass);
 		}
 
-		for (MethodEntry method : jarIndex.getEntryIndex().getMethods()) {
-			inverseMappings.insert(obfOwnerAndDesc(deobfuscator.extendedTranslate(method).getValue()), new EntryMapping(method.getName()));
+		obfClasses.put(deobfClass, obfClass);
+
+		// the deobfuscated names of inner classes contain the names of their outer classes
+		if (previous != null && !previous.equals(deobfClass)) {
+			for (ClassEntry innerClass : innerClasses.getOrDefault(obfClass, List.of())) {
+				ClassEntry deobfInnerClass = deobfClasses.get(innerClass);
+
+				if (deobfInnerClass != null) {
+					putClass(innerClass, new ClassEntry(deobfClass, deobfInnerClass.getName()));
+				}
+			}
 		}
 	}
 
-	public void refreshName(Entry<?> entry, String oldDeobfName, String newDeobfName) {
-		inverseMappings.remove(entry.withName(oldDeobfName));
-		inverseMappings.insert(entry.withName(newDeobfName), new EntryMapping(entry.getName()));
+	private void putMember(ParentedEntry<ClassEntry> obfMember, ParentedEntry<ClassEntry> deobfMember) {
+		obfMemberNames.put(MemberKey.of(obfOwnerAndDesc(deobfMember)), obfMember.getName());
 	}
 
 	@SuppressWarnings("unchecked")
@@ -82,6 +140,13 @@ public class ObfuscatingTranslator implements Translator {
 		return translatable;
 	}
 
+	private record MemberKey(@Nullable ClassEntry owner, String name, String desc) {
+		private static MemberKey of(ParentedEntry<ClassEntry> member) {
+			String desc = member instanceof FieldEntry field ? field.getDesc().toString() : ((MethodEntry) member).getDesc().toString();
+			return new MemberKey(member.getParent(), member.getName(), desc);
+		}
+	}
+
 	private class ObfuscatingResolver implements EntryResolver {
 		@Override
 		@SuppressWarnings("unchecked")
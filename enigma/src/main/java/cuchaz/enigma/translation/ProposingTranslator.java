@@ -13,10 +13,13 @@ import cuchaz.enigma.translation.representation.entry.Entry;
 public class ProposingTranslator implements Translator {
 	private final EntryRemapper mapper;
 	private final NameProposalService[] nameProposalServices;
+	// name proposals can depend on any mapping, so the cache is invalidated by every change
+	private final TranslationCache cache;
 
 	public ProposingTranslator(EntryRemapper mapper, NameProposalService[] nameProposalServices) {
 		this.mapper = mapper;
 		this.nameProposalServices = nameProposalServices;
+		this.cache = new TranslationCache(mapper.getObfToDeobf(), null);
 	}
 
 	@Nullable
@@ -26,6 +29,10 @@ public class ProposingTranslator implements Translator {
 			return null;
 		}
 
+		return cache.translate(translatable, this::translateUncached);
+	}
+
+	private <T extends Translatable> TranslateResult<T> translateUncached(T translatable) {
 		TranslateResult<T> deobfuscated = mapper.extendedDeobfuscate(translatable);
 
 		if (translatable instanceof Entry && ((Entry) deobfuscated.getValue()).getName().equals(((Entry<?>) translatable).getName())) {
@@ -36,6 +43,10 @@ public class ProposingTranslator implements Translator {
 		return deobfuscated;
 	}
 
+	public TranslationCache.Stats getCacheStats() {
+		return cache.getStats();
+	}
+
 	private Optional<String> proposeName(Entry<?> entry) {
 		return Arrays.stream(nameProposalServices).map(service -> service.proposeName(entry, mapper)).filter(Optional::isPresent).map(Optional::get).findFirst();
 	}
@@ -0,0 +1,160 @@
+package cuchaz.enigma.translation;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.Nullable;
+
+import cuchaz.enigma.translation.mapping.EntryResolver;
+import cuchaz.enigma.translation.mapping.ResolutionStrategy;
+import cuchaz.enigma.translation.mapping.tree.DeltaTrackingTree;
+import cuchaz.enigma.translation.representation.MethodDescriptor;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+
+/**
+ * Memoizes the results of a translator, and checks them against the generations of the mappings they were
+ * translated with, so that a change only invalidates the results which could depend on it.
+ *
+ * <p>A class or descriptor is translated again after any class is renamed. A field or method is translated again
+ * after a class is renamed or after a member of its top-level class, or of the top-level class of one of the entries
+ * it resolves to, changes. Without a resolver, every result is translated again after any change.
+ *
+ * <p>Only classes, fields, methods and descriptors are cached, because the other translatables either aren't
+ * translated as often or aren't identified by everything their translation depends on.
+ */
+public final class TranslationCache {
+	/**
+	 * The default maximum number of cached translations, which can be changed with the
+	 * {@code enigma.translationCacheSize} system property.
+	 */
+	public static final int DEFAULT_MAX_SIZE = Integer.getInteger("enigma.translationCacheSize", 1 << 20);
+
+	private static final Set<Class<?>> CACHED_TYPES = Set.of(ClassEntry.class, FieldEntry.class, MethodEntry.class, TypeDescriptor.class, MethodDescriptor.class);
+	private static final ClassEntry[] NO_DEPENDENCIES = new ClassEntry[0];
+
+	private final DeltaTrackingTree<?> mappings;
+	@Nullable
+	private final EntryResolver resolver;
+	private final int maxSize;
+	private final ConcurrentMap<Translatable, CachedResult> results = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	/**
+	 * @param mappings the mappings the translations are made with
+	 * @param resolver the resolver used to find the entries whose mappings a translation depends on, or
+	 *                 {@code null} if translations can depend on any mapping
+	 */
+	public TranslationCache(DeltaTrackingTree<?> mappings, @Nullable EntryResolver resolver) {
+		this(mappings, resolver, DEFAULT_MAX_SIZE);
+	}
+
+	public TranslationCache(DeltaTrackingTree<?> mappings, @Nullable EntryResolver resolver, int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("Cache size cannot be negative: " + maxSize);
+		}
+
+		this.mappings = mappings;
+		this.resolver = resolver;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the cached translation if it's still current, and otherwise translates and caches it.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Translatable> TranslateResult<T> translate(T translatable, Function<T, TranslateResult<T>> translator) {
+		if (!CACHED_TYPES.contains(translatable.getClass())) {
+			return translator.apply(translatable);
+		}
+
+		CachedResult cached = results.get(translatable);
+
+		if (cached != null) {
+			if (isCurrent(cached)) {
+				hits.increment();
+				return (TranslateResult<T>) cached.result;
+			}
+
+			invalidations.increment();
+		}
+
+		misses.increment();
+
+		// read the generation first, so that a change made while translating invalidates the result
+		long generation = mappings.getGeneration();
+		TranslateResult<T> result = translator.apply(translatable);
+
+		if (results.size() >= maxSize) {
+			results.clear();
+		}
+
+		results.put(translatable, new CachedResult(result, generation, getDependencies(translatable)));
+		return result;
+	}
+
+	private boolean isCurrent(CachedResult cached) {
+		if (resolver == null) {
+			return mappings.getGeneration() == cached.generation;
+		}
+
+		if (mappings.getClassGeneration() > cached.generation) {
+			return false;
+		}
+
+		for (ClassEntry dependency : cached.dependencies) {
+			if (mappings.getMemberGeneration(dependency) > cached.generation) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private ClassEntry[] getDependencies(Translatable translatable) {
+		if (resolver == null || !(translatable instanceof Entry<?> entry) || entry instanceof ClassEntry) {
+			return NO_DEPENDENCIES;
+		}
+
+		Set<ClassEntry> dependencies = new HashSet<>();
+		dependencies.add(entry.getTopLevelClass());
+
+		for (Entry<?> root : resolver.resolveEntry(entry, ResolutionStrategy.RESOLVE_ROOT)) {
+			dependencies.add(root.getTopLevelClass());
+		}
+
+		return dependencies.toArray(ClassEntry[]::new);
+	}
+
+	/**
+	 * Returns a snapshot of the cache statistics since this cache was created.
+	 */
+	public Stats getStats() {
+		return new Stats(hits.sum(), misses.sum(), invalidations.sum(), results.size());
+	}
+
+	/**
+	 * @param hitCount the number of translations served from the cache
+	 * @param missCount the number of translations that had to be made
+	 * @param invalidationCount the number of cached translations that were outdated by a change to the mappings
+	 * @param size the number of translations currently cached
+	 */
+	public record Stats(long hitCount, long missCount, long invalidationCount, int size) {
+		public double hitRate() {
+			long requests = hitCount + missCount;
+			return requests == 0 ? 1 : (double) hitCount / requests;
+		}
+	}
+
+	private record CachedResult(TranslateResult<?> result, long generation, ClassEntry[] dependencies) {
+	}
+}
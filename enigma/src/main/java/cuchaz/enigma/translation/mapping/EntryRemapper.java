@@ -11,6 +11,7 @@ import cuchaz.enigma.analysis.index.JarIndex;
 import cuchaz.enigma.translation.MappingTranslator;
 import cuchaz.enigma.translation.Translatable;
 import cuchaz.enigma.translation.TranslateResult;
+import cuchaz.enigma.translation.TranslationCache;
 import cuchaz.enigma.translation.Translator;
 import cuchaz.enigma.translation.mapping.tree.DeltaTrackingTree;
 import cuchaz.enigma.translation.mapping.tree.EntryTree;
@@ -26,7 +27,7 @@ public class EntryRemapper {
 	private final DeltaTrackingTree<EntryMapping> obfToDeobf;
 
 	private final EntryResolver obfResolver;
-	private final Translator deobfuscator;
+	private final MappingTranslator deobfuscator;
 	private final JarIndex jarIndex;
 
 	private final MappingValidator validator;
@@ -36,7 +37,7 @@ public class EntryRemapper {
 
 		this.obfResolver = jarIndex.getEntryResolver();
 
-		this.deobfuscator = new MappingTranslator(obfToDeobf, obfResolver);
+		this.deobfuscator = new MappingTranslator(obfToDeobf, obfResolver, new TranslationCache(this.obfToDeobf, obfResolver));
 		this.jarIndex = jarIndex;
 
 		this.validator = new MappingValidator(obfToDeobf, deobfuscator, jarIndex);
@@ -137,6 +138,10 @@ public class EntryRemapper {
 		return deobfuscator;
 	}
 
+	public TranslationCache.Stats getDeobfuscationCacheStats() {
+		return deobfuscator.getCache().getStats();
+	}
+
 	public Stream<Entry<?>> getObfEntries() {
 		return obfToDeobf.getAllEntries();
 	}
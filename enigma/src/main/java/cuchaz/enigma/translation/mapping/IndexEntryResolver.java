@@ -1,21 +1,21 @@
 package cuchaz.enigma.translation.mapping;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jetbrains.annotations.Nullable;
 
-import cuchaz.enigma.analysis.IndexTreeBuilder;
-import cuchaz.enigma.analysis.MethodImplementationsTreeNode;
-import cuchaz.enigma.analysis.MethodInheritanceTreeNode;
 import cuchaz.enigma.analysis.index.BridgeMethodIndex;
 import cuchaz.enigma.analysis.index.EntryIndex;
 import cuchaz.enigma.analysis.index.InheritanceIndex;
 import cuchaz.enigma.analysis.index.JarIndex;
-import cuchaz.enigma.translation.VoidTranslator;
+import cuchaz.enigma.analysis.index.MethodEquivalenceIndex;
 import cuchaz.enigma.translation.representation.AccessFlags;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.Entry;
@@ -25,15 +25,36 @@ public class IndexEntryResolver implements EntryResolver {
 	private final EntryIndex entryIndex;
 	private final InheritanceIndex inheritanceIndex;
 	private final BridgeMethodIndex bridgeMethodIndex;
+	private final MethodEquivalenceIndex methodEquivalenceIndex;
 
-	private final IndexTreeBuilder treeBuilder;
+	/**
+	 * The maximum number of memoized results of each kind, which can be changed with the
+	 * {@code enigma.resolverCacheSize} system property.
+	 */
+	private static final int MAX_CACHE_SIZE = Integer.getInteger("enigma.resolverCacheSize", 1 << 18);
+
+	// memoized results, only kept while caching is enabled because they depend on the whole index. resolutions are
+	// stored for the members of classes rather than for the entries passed in, since entries that compare equal can
+	// still differ in type, name or javadocs, and the results must be built from the caller's own entry
+	private final ConcurrentMap<ResolutionKey, Collection<Entry<ClassEntry>>> resolvedChildren = new ConcurrentHashMap<>();
+	private final ConcurrentMap<MethodEntry, Set<MethodEntry>> equivalentMethods = new ConcurrentHashMap<>();
+	private volatile boolean caching;
 
 	public IndexEntryResolver(JarIndex index) {
 		this.entryIndex = index.getEntryIndex();
 		this.inheritanceIndex = index.getInheritanceIndex();
 		this.bridgeMethodIndex = index.getBridgeMethodIndex();
+		this.methodEquivalenceIndex = index.getMethodEquivalenceIndex();
+	}
 
-		this.treeBuilder = new IndexTreeBuilder(index);
+	/**
+	 * Sets whether resolved entries and equivalent methods are memoized. Caching should only be enabled once
+	 * the index is complete, and is disabled while it changes. Changing this discards the memoized results.
+	 */
+	public void setCaching(boolean caching) {
+		this.caching = caching;
+		resolvedChildren.clear();
+		equivalentMethods.clear();
 	}
 
 	@Override
@@ -45,24 +66,69 @@ public class IndexEntryResolver implements EntryResolver {
 
 		Entry<ClassEntry> classChild = getClassChild(entry);
 
-		if (classChild != null && !(classChild instanceof ClassEntry)) {
-			AccessFlags access = entryIndex.getEntryAccess(classChild);
+		if (classChild == null || classChild instanceof ClassEntry) {
+			return Collections.singleton(entry);
+		}
+
+		Collection<Entry<ClassEntry>> resolvedChildren;
 
-			// If we're looking for the closest and this entry exists, we're done looking
-			if (strategy == ResolutionStrategy.RESOLVE_CLOSEST && access != null) {
-				return Collections.singleton(entry);
-			}
+		if (caching) {
+			ResolutionKey key = new ResolutionKey(classChild, strategy);
+			resolvedChildren = this.resolvedChildren.get(key);
 
-			if (access == null || !access.isPrivate()) {
-				Collection<Entry<ClassEntry>> resolvedChildren = resolveChildEntry(classChild, strategy);
+			if (resolvedChildren == null) {
+				resolvedChildren = resolveClassChild(classChild, strategy);
 
-				if (!resolvedChildren.isEmpty()) {
-					return resolvedChildren.stream().map(resolvedChild -> (E) entry.replaceAncestor(classChild, resolvedChild)).toList();
+				if (this.resolvedChildren.size() >= MAX_CACHE_SIZE) {
+					this.resolvedChildren.clear();
 				}
+
+				this.resolvedChildren.putIfAbsent(key, resolvedChildren);
 			}
+		} else {
+			resolvedChildren = resolveClassChild(classChild, strategy);
+		}
+
+		if (resolvedChildren.isEmpty()) {
+			return Collections.singleton(entry);
+		}
+
+		return resolvedChildren.stream().map(resolvedChild -> (E) entry.replaceAncestor(classChild, rebase(classChild, resolvedChild))).toList();
+	}
+
+	/**
+	 * Resolves an entry which is the child of a class.
+	 *
+	 * @return the entries it resolves to, or an empty collection if it resolves to itself
+	 */
+	private Collection<Entry<ClassEntry>> resolveClassChild(Entry<ClassEntry> classChild, ResolutionStrategy strategy) {
+		AccessFlags access = entryIndex.getEntryAccess(classChild);
+
+		// If we're looking for the closest and this entry exists, we're done looking
+		if (strategy == ResolutionStrategy.RESOLVE_CLOSEST && access != null) {
+			return Collections.emptySet();
+		}
+
+		if (access == null || !access.isPrivate()) {
+			return resolveChildEntry(classChild, strategy);
+		}
+
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Rebuilds a resolved entry from the given one when it is the same member in another class, so that it keeps
+	 * the type and javadocs of the given entry even if the resolution was memoized for an equal entry.
+	 */
+	private static Entry<ClassEntry> rebase(Entry<ClassEntry> classChild, Entry<ClassEntry> resolvedChild) {
+		ClassEntry owner = resolvedChild.getParent();
+
+		if (resolvedChild.withParent(classChild.getParent()).equals(classChild)) {
+			return classChild.withParent(owner);
 		}
 
-		return Collections.singleton(entry);
+		// a bridge method, which comes from the index rather than from the given entry
+		return resolvedChild;
 	}
 
 	@Nullable
@@ -166,6 +232,37 @@ public class IndexEntryResolver implements EntryResolver {
 
 	@Override
 	public Set<MethodEntry> resolveEquivalentMethods(MethodEntry methodEntry) {
+		if (!caching) {
+			return resolveEquivalentMethodsUncached(methodEntry);
+		}
+
+		AccessFlags access = entryIndex.getMethodAccess(methodEntry);
+
+		if (access != null && canInherit(methodEntry, access)) {
+			Set<MethodEntry> group = methodEquivalenceIndex.getEquivalentMethods(methodEntry);
+
+			if (group != null) {
+				return new HashSet<>(group);
+			}
+		}
+
+		Set<MethodEntry> methods = equivalentMethods.get(methodEntry);
+
+		if (methods == null) {
+			methods = resolveEquivalentMethodsUncached(methodEntry);
+
+			if (equivalentMethods.size() >= MAX_CACHE_SIZE) {
+				equivalentMethods.clear();
+			}
+
+			equivalentMethods.putIfAbsent(methodEntry, methods);
+		}
+
+		// callers may modify the returned set
+		return new HashSet<>(methods);
+	}
+
+	private Set<MethodEntry> resolveEquivalentMethodsUncached(MethodEntry methodEntry) {
 		Set<MethodEntry> set = new HashSet<>();
 		resolveEquivalentMethods(set, methodEntry);
 		return set;
@@ -183,11 +280,16 @@ public class IndexEntryResolver implements EntryResolver {
 			return;
 		}
 
-		resolveEquivalentMethods(methodEntries, treeBuilder.buildMethodInheritance(VoidTranslator.INSTANCE, methodEntry));
+		MethodEntry rootEntry = resolveFirstEntry(methodEntry, ResolutionStrategy.RESOLVE_ROOT);
+		resolveEquivalentMethods(methodEntries, buildOverrides(rootEntry));
 	}
 
-	private void resolveEquivalentMethods(Set<MethodEntry> methodEntries, MethodInheritanceTreeNode node) {
-		MethodEntry methodEntry = node.getMethodEntry();
+	/**
+	 * Collects the same methods as the method inheritance tree built by {@link cuchaz.enigma.analysis.IndexTreeBuilder}, in the same
+	 * order, without creating the tree nodes.
+	 */
+	private void resolveEquivalentMethods(Set<MethodEntry> methodEntries, Overrides overrides) {
+		MethodEntry methodEntry = overrides.method();
 
 		if (methodEntries.contains(methodEntry)) {
 			return;
@@ -201,26 +303,28 @@ public class IndexEntryResolver implements EntryResolver {
 		}
 
 		// look at bridge methods!
-		MethodEntry bridgedMethod = bridgeMethodIndex.getBridgeFromSpecialized(methodEntry);
-
-		while (bridgedMethod != null) {
-			resolveEquivalentMethods(methodEntries, bridgedMethod);
-			bridgedMethod = bridgeMethodIndex.getBridgeFromSpecialized(bridgedMethod);
-		}
+		collectBridgedMethods(methodEntries, methodEntry);
 
 		// look at interface methods too
-		for (MethodImplementationsTreeNode implementationsNode : treeBuilder.buildMethodImplementations(VoidTranslator.INSTANCE, methodEntry)) {
-			resolveEquivalentMethods(methodEntries, implementationsNode);
+		for (MethodEntry rootEntry : resolveEntry(methodEntry, ResolutionStrategy.RESOLVE_ROOT)) {
+			collectImplementation(methodEntries, rootEntry);
+
+			for (ClassEntry inheritor : inheritanceIndex.getDescendants(rootEntry.getParent())) {
+				MethodEntry implementation = rootEntry.withParent(inheritor);
+
+				if (entryIndex.hasMethod(implementation)) {
+					collectImplementation(methodEntries, implementation);
+				}
+			}
 		}
 
 		// recurse
-		for (int i = 0; i < node.getChildCount(); i++) {
-			resolveEquivalentMethods(methodEntries, (MethodInheritanceTreeNode) node.getChildAt(i));
+		for (Overrides child : overrides.children()) {
+			resolveEquivalentMethods(methodEntries, child);
 		}
 	}
 
-	private void resolveEquivalentMethods(Set<MethodEntry> methodEntries, MethodImplementationsTreeNode node) {
-		MethodEntry methodEntry = node.getMethodEntry();
+	private void collectImplementation(Set<MethodEntry> methodEntries, MethodEntry methodEntry) {
 		AccessFlags flags = entryIndex.getMethodAccess(methodEntry);
 
 		if (flags != null && !flags.isPrivate() && !flags.isStatic()) {
@@ -229,20 +333,43 @@ public class IndexEntryResolver implements EntryResolver {
 		}
 
 		// look at bridge methods!
+		collectBridgedMethods(methodEntries, methodEntry);
+	}
+
+	private void collectBridgedMethods(Set<MethodEntry> methodEntries, MethodEntry methodEntry) {
 		MethodEntry bridgedMethod = bridgeMethodIndex.getBridgeFromSpecialized(methodEntry);
 
 		while (bridgedMethod != null) {
 			resolveEquivalentMethods(methodEntries, bridgedMethod);
 			bridgedMethod = bridgeMethodIndex.getBridgeFromSpecialized(bridgedMethod);
 		}
+	}
 
-		// recurse
-		for (int i = 0; i < node.getChildCount(); i++) {
-			resolveEquivalentMethods(methodEntries, (MethodImplementationsTreeNode) node.getChildAt(i));
+	/**
+	 * Finds the overrides of a method in the subclasses of its class, keeping only the branches which contain
+	 * an implementation, like {@link cuchaz.enigma.analysis.MethodInheritanceTreeNode#load(JarIndex)}.
+	 */
+	private Overrides buildOverrides(MethodEntry methodEntry) {
+		List<Overrides> children = new ArrayList<>();
+
+		for (ClassEntry inheritorEntry : inheritanceIndex.getChildren(methodEntry.getParent())) {
+			Overrides child = buildOverrides(new MethodEntry(inheritorEntry, methodEntry.getName(), methodEntry.getDesc()));
+
+			if (!child.children().isEmpty() || entryIndex.hasMethod(child.method())) {
+				children.add(child);
+			}
 		}
+
+		return new Overrides(methodEntry, children);
 	}
 
 	private boolean canInherit(MethodEntry entry, AccessFlags access) {
 		return !entry.isConstructor() && !access.isPrivate() && !access.isStatic() && !access.isFinal();
 	}
+
+	private record ResolutionKey(Entry<ClassEntry> classChild, ResolutionStrategy strategy) {
+	}
+
+	private record Overrides(MethodEntry method, List<Overrides> children) {
+	}
 }
@@ -11,9 +11,13 @@
 
 package cuchaz.enigma.translation.mapping;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import cuchaz.enigma.ProgressListener;
 import cuchaz.enigma.analysis.index.JarIndex;
@@ -34,18 +38,38 @@ public class MappingsChecker {
 		this.mappings = mappings;
 	}
 
+	/**
+	 * Finds and removes the mappings of entries that don't exist in the jar. The classes at the root of the
+	 * mapping tree are checked in parallel.
+	 */
 	public Dropped dropBrokenMappings(ProgressListener progress) {
 		Dropped dropped = new Dropped();
 
-		Collection<Entry<?>> obfEntries = mappings.getAllEntries().filter(e -> e instanceof ClassEntry || e instanceof MethodEntry || e instanceof FieldEntry || e instanceof LocalVariableEntry).toList();
+		List<EntryTreeNode<EntryMapping>> rootNodes = mappings.getRootNodes().toList();
 
-		progress.init(obfEntries.size(), "Checking for dropped mappings");
+		progress.init(rootNodes.size(), "Checking for dropped mappings");
 
-		int steps = 0;
+		AtomicInteger steps = new AtomicInteger();
+		// whether methods should be dropped, shared by the locals of a method
+		Map<Entry<?>, Boolean> droppedMethods = new ConcurrentHashMap<>();
 
-		for (Entry<?> entry : obfEntries) {
-			progress.step(steps++, entry.toString());
-			tryDropEntry(dropped, entry);
+		List<EntryTreeNode<EntryMapping>> droppedNodes = rootNodes.parallelStream().flatMap(rootNode -> {
+			progress.step(steps.getAndIncrement(), rootNode.getEntry().toString());
+			List<EntryTreeNode<EntryMapping>> nodes = new ArrayList<>();
+
+			for (EntryTreeNode<EntryMapping> node : rootNode.getNodesRecursively()) {
+				Entry<?> entry = node.getEntry();
+
+				if (node.hasValue() && isCheckedEntry(entry) && shouldDropEntry(entry, droppedMethods)) {
+					nodes.add(node);
+				}
+			}
+
+			return nodes.stream();
+		}).toList();
+
+		for (EntryTreeNode<EntryMapping> node : droppedNodes) {
+			dropped.drop(node.getEntry(), node.getValue());
 		}
 
 		dropped.apply(mappings);
@@ -53,14 +77,25 @@ public class MappingsChecker {
 		return dropped;
 	}
 
-	private void tryDropEntry(Dropped dropped, Entry<?> entry) {
-		if (shouldDropEntry(entry)) {
-			EntryMapping mapping = mappings.get(entry);
+	private static boolean isCheckedEntry(Entry<?> entry) {
+		return entry instanceof ClassEntry || entry instanceof MethodEntry || entry instanceof FieldEntry || entry instanceof LocalVariableEntry;
+	}
+
+	private boolean shouldDropEntry(Entry<?> entry, Map<Entry<?>, Boolean> droppedMethods) {
+		if (entry instanceof LocalVariableEntry localVariableEntry && index.getEntryIndex().hasEntry(entry)) {
+			// Drop local variables only if the method entry is to be dropped
+			MethodEntry method = localVariableEntry.getParent();
+			Boolean dropMethod = droppedMethods.get(method);
 
-			if (mapping != null) {
-				dropped.drop(entry, mapping);
+			if (dropMethod == null) {
+				dropMethod = shouldDropEntry(method);
+				droppedMethods.put(method, dropMethod);
 			}
+
+			return dropMethod;
 		}
+
+		return shouldDropEntry(entry);
 	}
 
 	private boolean shouldDropEntry(Entry<?> entry) {
@@ -3,6 +3,9 @@ package cuchaz.enigma.translation.mapping.tree;
 import java.util.AbstractCollection;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 import org.jetbrains.annotations.Nullable;
@@ -12,6 +15,7 @@ import cuchaz.enigma.translation.mapping.EntryMap;
 import cuchaz.enigma.translation.mapping.EntryMapping;
 import cuchaz.enigma.translation.mapping.EntryResolver;
 import cuchaz.enigma.translation.mapping.MappingDelta;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.Entry;
 
 public class DeltaTrackingTree<T> extends AbstractCollection<EntryTreeNode<T>> implements EntryTree<T> {
@@ -20,6 +24,11 @@ public class DeltaTrackingTree<T> extends AbstractCollection<EntryTreeNode<T>> i
 	private EntryTree<T> deltaReference;
 	private EntryTree<Object> changes = new HashEntryTree<>();
 
+	// bumped after every change, so that translations can tell whether the mappings they used are still current
+	private final AtomicLong generation = new AtomicLong();
+	private volatile long classGeneration;
+	private final Map<ClassEntry, Long> memberGenerations = new ConcurrentHashMap<>();
+
 	public DeltaTrackingTree(EntryTree<T> delegate) {
 		this.delegate = delegate;
 		this.deltaReference = new HashEntryTree<>(delegate);
@@ -33,19 +42,54 @@ public class DeltaTrackingTree<T> extends AbstractCollection<EntryTreeNode<T>> i
 	public void insert(Entry<?> entry, T value) {
 		trackChange(entry);
 		delegate.insert(entry, value);
+		bumpGeneration(entry);
 	}
 
 	@Nullable
 	@Override
 	public T remove(Entry<?> entry) {
 		trackChange(entry);
-		return delegate.remove(entry);
+		T removed = delegate.remove(entry);
+		bumpGeneration(entry);
+		return removed;
 	}
 
 	public void trackChange(Entry<?> entry) {
 		changes.insert(entry, MappingDelta.PLACEHOLDER);
 	}
 
+	private void bumpGeneration(Entry<?> entry) {
+		long newGeneration = generation.incrementAndGet();
+
+		if (entry instanceof ClassEntry) {
+			classGeneration = newGeneration;
+		} else {
+			memberGenerations.put(entry.getTopLevelClass(), newGeneration);
+		}
+	}
+
+	/**
+	 * Returns the number of changes made to the mappings so far.
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Returns the generation of the last change to the mapping of a class.
+	 */
+	public long getClassGeneration() {
+		return classGeneration;
+	}
+
+	/**
+	 * Returns the generation of the last change to the mapping of a member of a top-level class or its inner
+	 * classes, not counting changes to the classes themselves.
+	 */
+	public long getMemberGeneration(ClassEntry topLevelClass) {
+		return memberGenerations.getOrDefault(topLevelClass, 0L);
+	}
+
 	@Nullable
 	@Override
 	public T get(Entry<?> entry) {
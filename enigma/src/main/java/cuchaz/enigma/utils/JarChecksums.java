@@ -0,0 +1,232 @@
+package cuchaz.enigma.utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.Nullable;
+
+import cuchaz.enigma.config.ConfigPaths;
+
+/**
+ * Computes the checksums that identify a set of input jars, for example to check that the clients of a server opened
+ * the same jars, or to key the caches of a project.
+ *
+ * <p>The checksum of each jar is cached by its path, size and modification time, and the cache can be stored on disk
+ * so that reopening an unchanged jar doesn't need to read it at all. Jars are hashed in parallel.
+ */
+public final class JarChecksums {
+	/**
+	 * The mode used by default, which can be changed with the {@code enigma.jarChecksumMode} system property.
+	 */
+	public static final Mode DEFAULT_MODE = Mode.valueOf(System.getProperty("enigma.jarChecksumMode", Mode.CENTRAL_DIRECTORY.name()).toUpperCase(Locale.ROOT));
+
+	private final Mode mode;
+	@Nullable
+	private final Path cacheFile;
+	private final Map<CacheKey, byte[]> checksums = new ConcurrentHashMap<>();
+	private boolean loaded;
+	private volatile boolean dirty;
+
+	/**
+	 * @param cacheFile the file the checksums are stored in, or {@code null} to only keep them in memory
+	 */
+	public JarChecksums(Mode mode, @Nullable Path cacheFile) {
+		this.mode = mode;
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Returns the checksums with the default mode, stored in the default location unless that was disabled with
+	 * {@code -Denigma.checksumCache=false}.
+	 */
+	public static JarChecksums createDefault() {
+		if (!Boolean.parseBoolean(System.getProperty("enigma.checksumCache", "true"))) {
+			return new JarChecksums(DEFAULT_MODE, null);
+		}
+
+		return new JarChecksums(DEFAULT_MODE, ConfigPaths.getCachePathRoot().resolve("enigma").resolve("checksums.txt"));
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Computes the checksum of the classes in the given jars. The checksum of a single jar is the checksum of
+	 * its classes, and the checksum of several jars is the SHA-1 of their checksums in order.
+	 */
+	public byte[] compute(List<Path> jars) throws IOException {
+		if (jars.isEmpty()) {
+			throw new IllegalArgumentException("Must provide at least one zip");
+		}
+
+		load();
+
+		List<byte[]> jarChecksums;
+
+		try {
+			jarChecksums = jars.parallelStream().map(this::computeCached).toList();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		save();
+
+		if (jarChecksums.size() == 1) {
+			return jarChecksums.get(0);
+		}
+
+		MessageDigest digest = createDigest();
+
+		for (byte[] checksum : jarChecksums) {
+			digest.update(checksum);
+		}
+
+		return digest.digest();
+	}
+
+	private byte[] computeCached(Path jar) {
+		try {
+			Path path = jar.toAbsolutePath().normalize();
+			CacheKey key = new CacheKey(mode, path.toString(), Files.size(path), Files.getLastModifiedTime(path).toMillis());
+			byte[] checksum = checksums.get(key);
+
+			if (checksum == null) {
+				checksum = mode.compute(path);
+				// the checksum replaces the ones of older versions of the jar, so that the stored cache doesn't grow
+				// every time the jar changes
+				checksums.keySet().removeIf(other -> other.mode == mode && other.path.equals(key.path));
+				checksums.put(key, checksum);
+				dirty = true;
+			}
+
+			return checksum;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private synchronized void load() {
+		if (loaded || cacheFile == null) {
+			return;
+		}
+
+		loaded = true;
+
+		try {
+			for (String line : Files.readAllLines(cacheFile, StandardCharsets.UTF_8)) {
+				String[] parts = line.split("\t", 5);
+
+				if (parts.length == 5) {
+					checksums.put(new CacheKey(Mode.valueOf(parts[0]), parts[4], Long.parseLong(parts[1]), Long.parseLong(parts[2])), HexFormat.of().parseHex(parts[3]));
+				}
+			}
+		} catch (NoSuchFileException e) {
+			// nothing cached yet
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Failed to read jar checksum cache " + cacheFile);
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Stores the checksums if new ones were computed. Failures are reported but not thrown, since the cache is optional.
+	 */
+	private synchronized void save() {
+		if (!dirty || cacheFile == null) {
+			return;
+		}
+
+		dirty = false;
+
+		try {
+			Files.createDirectories(cacheFile.getParent());
+			Path tempPath = Files.createTempFile(cacheFile.getParent(), "checksums", ".tmp");
+
+			try {
+				try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+					for (Map.Entry<CacheKey, byte[]> entry : checksums.entrySet()) {
+						CacheKey key = entry.getKey();
+						writer.write(key.mode + "\t" + key.size + "\t" + key.lastModified + "\t" + HexFormat.of().formatHex(entry.getValue()) + "\t" + key.path);
+						writer.newLine();
+					}
+				}
+
+				// write to a temporary file first so that concurrent readers never see a partial file
+				Files.move(tempPath, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tempPath);
+			}
+		} catch (IOException e) {
+			System.err.println("Failed to write jar checksum cache " + cacheFile);
+			e.printStackTrace();
+		}
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			// Algorithm guaranteed to be supported
+			throw new RuntimeException(e);
+		}
+	}
+
+	public enum Mode {
+		/**
+		 * Hashes the names and contents of the classes, see {@link Utils#zipSha1(Path...)}.
+		 */
+		CONTENT {
+			@Override
+			byte[] compute(Path jar) throws IOException {
+				return Utils.zipSha1(jar);
+			}
+		},
+		/**
+		 * Hashes the names, CRC-32s and sizes of the classes as stored in the central directory, which doesn't need
+		 * to read or inflate the classes themselves.
+		 */
+		CENTRAL_DIRECTORY {
+			@Override
+			byte[] compute(Path jar) throws IOException {
+				MessageDigest digest = createDigest();
+				ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES);
+
+				try (MappedZipFile zip = new MappedZipFile(jar)) {
+					// only compare classes, in name order since different implementations may order them differently
+					List<MappedZipFile.Entry> entries = zip.getEntries().stream()
+							.filter(entry -> entry.name().toLowerCase(Locale.ROOT).endsWith(".class"))
+							.sorted(Comparator.comparing(MappedZipFile.Entry::name))
+							.toList();
+
+					for (MappedZipFile.Entry entry : entries) {
+						digest.update(entry.name().getBytes(StandardCharsets.UTF_8));
+						digest.update(buffer.clear().putInt(entry.crc()).putLong(entry.size()).flip());
+					}
+				}
+
+				return digest.digest();
+			}
+		};
+
+		abstract byte[] compute(Path jar) throws IOException;
+	}
+
+	private record CacheKey(Mode mode, String path, long size, long lastModified) {
+	}
+}
@@ -0,0 +1,340 @@
+package cuchaz.enigma.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A read-only zip file that is memory-mapped and indexed from its central directory once, so that
+ * entries can be looked up by name and inflated straight from the mapped buffer.
+ *
+ * <p>The file is mapped lazily in windows of 1 GiB, so that zip files of any size can be read. An entry
+ * that crosses the end of a window is read from the file instead.
+ *
+ * <p>A mapping is only released when it is garbage collected, not when this zip file is closed, and Windows
+ * doesn't allow a mapped file to be replaced or deleted. For that reason, zip files are only mapped on Windows
+ * with {@code -Denigma.mapZipFiles=true}, and are otherwise read from the file, which can also be forced on other
+ * platforms with {@code -Denigma.mapZipFiles=false}.
+ *
+ * <p>Reading entries is thread-safe. Encrypted entries and entries compressed with anything other
+ * than deflate are not supported.
+ */
+public final class MappedZipFile implements AutoCloseable {
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	private static final int END_SIZE = 22;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+	private static final int MAX_COMMENT_SIZE = 0xFFFF;
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final long WINDOW_SIZE = 1L << 30;
+	// windows overlap, so that only entries larger than this can cross the end of a window
+	private static final long WINDOW_OVERLAP = 1L << 24;
+	private static final boolean MAP_FILES = Boolean.parseBoolean(System.getProperty("enigma.mapZipFiles", String.valueOf(Os.getOs() != Os.WINDOWS)));
+
+	private final Path path;
+	private final FileChannel channel;
+	private final long fileSize;
+	@Nullable
+	private final AtomicReferenceArray<ByteBuffer> windows;
+	private final Map<String, Entry> entries;
+
+	public MappedZipFile(Path path) throws IOException {
+		this(path, MAP_FILES);
+	}
+
+	/**
+	 * @param map whether to map the file, rather than reading every entry from it
+	 */
+	public MappedZipFile(Path path, boolean map) throws IOException {
+		this.path = path;
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try {
+			this.fileSize = channel.size();
+			this.windows = map ? new AtomicReferenceArray<>((int) ((fileSize + WINDOW_SIZE - 1) / WINDOW_SIZE)) : null;
+			this.entries = Collections.unmodifiableMap(readCentralDirectory());
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the entries of this zip file in central directory order.
+	 */
+	public Collection<Entry> getEntries() {
+		return entries.values();
+	}
+
+	@Nullable
+	public Entry getEntry(String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * Reads the uncompressed contents of the given entry, or returns {@code null} if there is no such entry.
+	 */
+	@Nullable
+	public byte[] read(String name) throws IOException {
+		Entry entry = entries.get(name);
+		return entry != null ? read(entry) : null;
+	}
+
+	/**
+	 * Reads the uncompressed contents of the given entry, which must fit in an array.
+	 */
+	public byte[] read(Entry entry) throws IOException {
+		if (entry.size > Integer.MAX_VALUE - 8) {
+			throw new IOException("Zip entry " + entry.name + " is too large to be read into an array in " + path);
+		}
+
+		ByteBuffer data = getData(entry);
+		byte[] bytes = new byte[(int) entry.size];
+
+		if (entry.method == ZipEntry.STORED) {
+			data.get(bytes);
+			return bytes;
+		}
+
+		Inflater inflater = new Inflater(true);
+
+		try {
+			inflater.setInput(data);
+			int length = 0;
+
+			while (length < bytes.length) {
+				int n = inflater.inflate(bytes, length, bytes.length - length);
+
+				if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+
+				length += n;
+			}
+
+			if (length != bytes.length) {
+				throw new IOException("Zip entry " + entry.name + " is truncated in " + path);
+			}
+
+			return bytes;
+		} catch (DataFormatException e) {
+			throw new IOException("Zip entry " + entry.name + " is corrupt in " + path, e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Returns a view of the stored, possibly compressed, data of the given entry.
+	 */
+	private ByteBuffer getData(Entry entry) throws IOException {
+		if ((entry.flags & 1) != 0) {
+			throw new IOException("Zip entry " + entry.name + " is encrypted in " + path);
+		}
+
+		if (entry.method != ZipEntry.STORED && entry.method != ZipEntry.DEFLATED) {
+			throw new IOException("Zip entry " + entry.name + " uses unsupported compression method " + entry.method + " in " + path);
+		}
+
+		ByteBuffer header = getRegion(entry.localHeaderOffset, 30);
+
+		if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+			throw new IOException("Invalid local header for zip entry " + entry.name + " in " + path);
+		}
+
+		long dataOffset = entry.localHeaderOffset + 30 + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+		return getRegion(dataOffset, entry.compressedSize);
+	}
+
+	/**
+	 * Returns the given part of the file, from a mapped window if there is one that contains all of it.
+	 */
+	private ByteBuffer getRegion(long offset, long length) throws IOException {
+		if (offset < 0 || length < 0 || offset + length > fileSize || length > Integer.MAX_VALUE) {
+			throw new IOException("Zip file is truncated or corrupt: " + path);
+		}
+
+		if (windows != null && offset < fileSize) {
+			int index = (int) (offset / WINDOW_SIZE);
+			long windowStart = index * WINDOW_SIZE;
+			ByteBuffer window = windows.get(index);
+
+			if (window == null) {
+				window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(fileSize - windowStart, WINDOW_SIZE + WINDOW_OVERLAP));
+
+				if (!windows.compareAndSet(index, null, window)) {
+					window = windows.get(index);
+				}
+			}
+
+			if (offset + length <= windowStart + window.capacity()) {
+				return window.slice((int) (offset - windowStart), (int) length).order(ByteOrder.LITTLE_ENDIAN);
+			}
+		}
+
+		ByteBuffer region = ByteBuffer.allocate((int) length).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (region.hasRemaining()) {
+			if (channel.read(region, offset + region.position()) < 0) {
+				throw new IOException("Zip file is truncated or corrupt: " + path);
+			}
+		}
+
+		return region.flip();
+	}
+
+	private Map<String, Entry> readCentralDirectory() throws IOException {
+		long tailOffset = Math.max(0, fileSize - END_SIZE - MAX_COMMENT_SIZE - ZIP64_LOCATOR_SIZE);
+		ByteBuffer tail = getRegion(tailOffset, fileSize - tailOffset);
+		int endOffset = findEndOfCentralDirectory(tail);
+		long entryCount = tail.getShort(endOffset + 10) & 0xFFFF;
+		long directorySize = tail.getInt(endOffset + 12) & 0xFFFFFFFFL;
+		long directoryOffset = tail.getInt(endOffset + 16) & 0xFFFFFFFFL;
+
+		int locatorOffset = endOffset - ZIP64_LOCATOR_SIZE;
+
+		if (locatorOffset >= 0 && tail.getInt(locatorOffset) == ZIP64_LOCATOR_SIGNATURE) {
+			ByteBuffer zip64End = getRegion(tail.getLong(locatorOffset + 8), 56);
+
+			if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+				throw new IOException("Invalid zip64 end of central directory in " + path);
+			}
+
+			entryCount = zip64End.getLong(32);
+			directorySize = zip64End.getLong(40);
+			directoryOffset = zip64End.getLong(48);
+		}
+
+		// the central directory is read once and then only referred to by offsets relative to its start
+		ByteBuffer buffer = getRegion(directoryOffset, directorySize);
+		Map<String, Entry> entries = new LinkedHashMap<>((int) Math.min(entryCount * 4 / 3 + 1, 1 << 20));
+		long offset = 0;
+
+		for (long i = 0; i < entryCount; i++) {
+			checkBounds(buffer, offset, 46);
+			int pos = (int) offset;
+
+			if (buffer.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+				throw new IOException("Invalid central directory entry in " + path);
+			}
+
+			int flags = getUnsignedShort(buffer, pos + 8);
+			int method = getUnsignedShort(buffer, pos + 10);
+			int crc = buffer.getInt(pos + 16);
+			long compressedSize = getUnsignedInt(buffer, pos + 20);
+			long size = getUnsignedInt(buffer, pos + 24);
+			int nameLength = getUnsignedShort(buffer, pos + 28);
+			int extraLength = getUnsignedShort(buffer, pos + 30);
+			int commentLength = getUnsignedShort(buffer, pos + 32);
+			long localHeaderOffset = getUnsignedInt(buffer, pos + 42);
+			checkBounds(buffer, offset, 46L + nameLength + extraLength + commentLength);
+
+			byte[] nameBytes = new byte[nameLength];
+			buffer.get(pos + 46, nameBytes);
+			String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			// sizes and offsets that don't fit are stored in the zip64 extra field, in this order
+			int extra = pos + 46 + nameLength;
+			int extraEnd = extra + extraLength;
+
+			while (extra + 4 <= extraEnd) {
+				int id = getUnsignedShort(buffer, extra);
+				int length = getUnsignedShort(buffer, extra + 2);
+				int field = extra + 4;
+
+				if (id == ZIP64_EXTRA_ID) {
+					if (size == ZIP64_MAGIC && field + 8 <= extraEnd) {
+						size = buffer.getLong(field);
+						field += 8;
+					}
+
+					if (compressedSize == ZIP64_MAGIC && field + 8 <= extraEnd) {
+						compressedSize = buffer.getLong(field);
+						field += 8;
+					}
+
+					if (localHeaderOffset == ZIP64_MAGIC && field + 8 <= extraEnd) {
+						localHeaderOffset = buffer.getLong(field);
+					}
+
+					break;
+				}
+
+				extra += 4 + length;
+			}
+
+			entries.putIfAbsent(name, new Entry(name, flags, method, crc, compressedSize, size, localHeaderOffset));
+			offset += 46L + nameLength + extraLength + commentLength;
+		}
+
+		return entries;
+	}
+
+	private int findEndOfCentralDirectory(ByteBuffer tail) throws IOException {
+		int limit = Math.max(0, tail.capacity() - END_SIZE - MAX_COMMENT_SIZE);
+
+		for (int pos = tail.capacity() - END_SIZE; pos >= limit; pos--) {
+			if (tail.getInt(pos) == END_SIGNATURE && pos + END_SIZE + getUnsignedShort(tail, pos + 20) == tail.capacity()) {
+				return pos;
+			}
+		}
+
+		throw new IOException("Not a zip file: " + path);
+	}
+
+	private void checkBounds(ByteBuffer buffer, long offset, long length) throws IOException {
+		if (offset < 0 || length < 0 || offset + length > buffer.capacity()) {
+			throw new IOException("Zip file is truncated or corrupt: " + path);
+		}
+	}
+
+	private static int getUnsignedShort(ByteBuffer buffer, int pos) {
+		return buffer.getShort(pos) & 0xFFFF;
+	}
+
+	private static long getUnsignedInt(ByteBuffer buffer, int pos) {
+		return buffer.getInt(pos) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Closes the file. Windows that were mapped stay valid until they are garbage collected, see the class
+	 * documentation.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * An entry of the central directory.
+	 *
+	 * @param crc the CRC-32 of the uncompressed data, as stored in the zip file
+	 */
+	public record Entry(String name, int flags, int method, int crc, long compressedSize, long size, long localHeaderOffset) {
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+	}
+}
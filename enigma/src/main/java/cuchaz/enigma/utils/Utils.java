@@ -13,6 +13,7 @@ package cuchaz.enigma.utils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -20,8 +21,10 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
@@ -94,6 +97,30 @@ public class Utils {
 		}
 	}
 
+	/**
+	 * Computes a checksum of every class in the given zips from the CRC-32 and size stored in their central
+	 * directories, keyed by internal name, without reading or inflating the classes. If a class is present in several
+	 * zips, the first one wins, matching {@link cuchaz.enigma.classprovider.CombiningClassProvider}.
+	 */
+	public static Map<String, byte[]> zipClassChecksums(Path... paths) throws IOException {
+		Map<String, byte[]> checksums = new HashMap<>();
+
+		for (Path path : paths) {
+			try (MappedZipFile zip = new MappedZipFile(path)) {
+				for (MappedZipFile.Entry entry : zip.getEntries()) {
+					String name = entry.name();
+
+					if (name.endsWith(".class")) {
+						byte[] checksum = ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(entry.crc()).putLong(entry.size()).array();
+						checksums.putIfAbsent(name.substring(0, name.length() - ".class".length()), checksum);
+					}
+				}
+			}
+		}
+
+		return checksums;
+	}
+
 	public static void withLock(Lock l, Runnable op) {
 		try {
 			l.lock();
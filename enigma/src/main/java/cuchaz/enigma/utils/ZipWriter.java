@@ -0,0 +1,216 @@
+package cuchaz.enigma.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a zip file from entries that were already compressed, so that the entries can be compressed in parallel
+ * while the file itself is written in order.
+ *
+ * <p>All entries get the same modification time, so that writing the same entries in the same order always
+ * produces the same file. Zip64 records are written when there are too many entries or the file is too large
+ * for the regular ones.
+ */
+public final class ZipWriter implements AutoCloseable {
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	private static final int VERSION = 20;
+	private static final int ZIP64_VERSION = 45;
+	private static final int UTF8_FLAG = 0x0800;
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final int ZIP64_COUNT_MAGIC = 0xFFFF;
+	// 1980-02-01 00:00, since some tools misread the earliest DOS date
+	private static final int DOS_TIME = 0;
+	private static final int DOS_DATE = (2 << 5) | 1;
+
+	private final OutputStream out;
+	private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+	private final ByteBuffer header = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+	private final Set<String> names = new HashSet<>();
+	private long offset;
+	private long entryCount;
+
+	public ZipWriter(OutputStream out) {
+		this.out = new BufferedOutputStream(out);
+	}
+
+	/**
+	 * Checks that a compression level can be passed to {@link #compress}, so that a bad level is reported before
+	 * anything is compressed.
+	 *
+	 * @throws IllegalArgumentException if the level is not a valid deflate level
+	 */
+	public static void checkCompressionLevel(int level) {
+		if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level " + level + ", must be from 0 to 9, or -1 for the default level");
+		}
+	}
+
+	/**
+	 * Compresses the data of an entry. This is thread-safe, unlike writing the entry.
+	 *
+	 * @param level the deflate level from 1 to 9, {@link Deflater#DEFAULT_COMPRESSION}, or
+	 *              {@link Deflater#NO_COMPRESSION} to store the data uncompressed
+	 */
+	public static CompressedEntry compress(String name, byte[] data, int level) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+
+		if (level == Deflater.NO_COMPRESSION) {
+			return new CompressedEntry(name, ZipEntry.STORED, (int) crc.getValue(), data.length, data);
+		}
+
+		Deflater deflater = new Deflater(level, true);
+
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+			byte[] buffer = new byte[8192];
+
+			while (!deflater.finished()) {
+				compressed.write(buffer, 0, deflater.deflate(buffer));
+			}
+
+			return new CompressedEntry(name, ZipEntry.DEFLATED, (int) crc.getValue(), data.length, compressed.toByteArray());
+		} finally {
+			deflater.end();
+		}
+	}
+
+	public void write(CompressedEntry entry) throws IOException {
+		if (!names.add(entry.name)) {
+			throw new ZipException("duplicate entry: " + entry.name);
+		}
+
+		byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+		long localHeaderOffset = offset;
+		boolean zip64 = localHeaderOffset >= ZIP64_MAGIC;
+
+		header.clear();
+		header.putInt(LOCAL_HEADER_SIGNATURE);
+		putEntryFields(entry, name, VERSION);
+		header.putShort((short) 0);
+		writeHeader();
+		writeBytes(name);
+		writeBytes(entry.data);
+
+		header.clear();
+		header.putInt(CENTRAL_HEADER_SIGNATURE);
+		header.putShort((short) (zip64 ? ZIP64_VERSION : VERSION));
+		putEntryFields(entry, name, zip64 ? ZIP64_VERSION : VERSION);
+		header.putShort((short) (zip64 ? 12 : 0));
+		header.putShort((short) 0);
+		header.putShort((short) 0);
+		header.putShort((short) 0);
+		header.putInt(0);
+		header.putInt((int) (zip64 ? ZIP64_MAGIC : localHeaderOffset));
+		centralDirectory.write(header.array(), 0, header.position());
+		centralDirectory.write(name);
+
+		if (zip64) {
+			header.clear();
+			header.putShort((short) ZIP64_EXTRA_ID);
+			header.putShort((short) 8);
+			header.putLong(localHeaderOffset);
+			centralDirectory.write(header.array(), 0, header.position());
+		}
+
+		entryCount++;
+	}
+
+	private void putEntryFields(CompressedEntry entry, byte[] name, int version) {
+		header.putShort((short) version);
+		header.putShort((short) UTF8_FLAG);
+		header.putShort((short) entry.method);
+		header.putShort((short) DOS_TIME);
+		header.putShort((short) DOS_DATE);
+		header.putInt(entry.crc);
+		header.putInt(entry.data.length);
+		header.putInt((int) entry.size);
+		header.putShort((short) name.length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			long directoryOffset = offset;
+			long directorySize = centralDirectory.size();
+			centralDirectory.writeTo(out);
+			offset += directorySize;
+
+			boolean zip64 = entryCount >= ZIP64_COUNT_MAGIC || directoryOffset >= ZIP64_MAGIC || directorySize >= ZIP64_MAGIC;
+
+			if (zip64) {
+				long zip64EndOffset = offset;
+
+				header.clear();
+				header.putInt(ZIP64_END_SIGNATURE);
+				header.putLong(44);
+				header.putShort((short) ZIP64_VERSION);
+				header.putShort((short) ZIP64_VERSION);
+				header.putInt(0);
+				header.putInt(0);
+				header.putLong(entryCount);
+				header.putLong(entryCount);
+				header.putLong(directorySize);
+				header.putLong(directoryOffset);
+				writeHeader();
+
+				header.clear();
+				header.putInt(ZIP64_LOCATOR_SIGNATURE);
+				header.putInt(0);
+				header.putLong(zip64EndOffset);
+				header.putInt(1);
+				writeHeader();
+			}
+
+			header.clear();
+			header.putInt(END_SIGNATURE);
+			header.putShort((short) 0);
+			header.putShort((short) 0);
+			header.putShort((short) (zip64 ? ZIP64_COUNT_MAGIC : entryCount));
+			header.putShort((short) (zip64 ? ZIP64_COUNT_MAGIC : entryCount));
+			header.putInt((int) (zip64 ? ZIP64_MAGIC : directorySize));
+			header.putInt((int) (zip64 ? ZIP64_MAGIC : directoryOffset));
+			header.putShort((short) 0);
+			writeHeader();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		out.write(header.array(), 0, header.position());
+		offset += header.position();
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		out.write(bytes);
+		offset += bytes.length;
+	}
+
+	/**
+	 * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+	 * @param crc the CRC-32 of the uncompressed data
+	 * @param size the size of the uncompressed data
+	 * @param data the compressed data
+	 */
+	public record CompressedEntry(String name, int method, int crc, long size, byte[] data) {
+	}
+}
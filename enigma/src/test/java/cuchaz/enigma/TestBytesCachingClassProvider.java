@@ -0,0 +1,91 @@
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import cuchaz.enigma.classprovider.BytesCachingClassProvider;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.ClassProvider;
+
+public class TestBytesCachingClassProvider {
+	private static ClassProvider createProvider(AtomicInteger loads) {
+		return new ClassProvider() {
+			@Override
+			public Collection<String> getClassNames() {
+				return List.of();
+			}
+
+			@Override
+			@Nullable
+			public ClassNode get(String name) {
+				return null;
+			}
+
+			@Override
+			@Nullable
+			public byte[] getBytes(String name) {
+				loads.incrementAndGet();
+				return name.startsWith("missing") ? null : new byte[1024];
+			}
+		};
+	}
+
+	@Test
+	public void cachesClassFiles() {
+		AtomicInteger loads = new AtomicInteger();
+		BytesCachingClassProvider provider = new BytesCachingClassProvider(createProvider(loads));
+		byte[] bytes = provider.getBytes("a");
+
+		assertThat(provider.getBytes("a"), is(sameInstance(bytes)));
+		assertThat(provider.getBytes("missing"), is(nullValue()));
+		assertThat(provider.getBytes("missing"), is(nullValue()));
+		assertThat(loads.get(), is(2));
+
+		CachingClassProvider.Stats stats = provider.getStats();
+		assertThat(stats.hitCount(), is(2L));
+		assertThat(stats.missCount(), is(2L));
+		assertThat(stats.size(), is(2));
+	}
+
+	@Test
+	public void reloadsInvalidatedClasses() {
+		AtomicInteger loads = new AtomicInteger();
+		BytesCachingClassProvider provider = new BytesCachingClassProvider(createProvider(loads));
+		provider.getBytes("a");
+		provider.getBytes("b");
+
+		provider.invalidate("a");
+		provider.getBytes("a");
+		provider.getBytes("b");
+		assertThat(loads.get(), is(3));
+
+		provider.invalidateAll();
+		provider.getBytes("b");
+		assertThat(loads.get(), is(4));
+	}
+
+	@Test
+	public void staysWithinBound() {
+		long maxWeight = 16 * 1024;
+		BytesCachingClassProvider provider = new BytesCachingClassProvider(createProvider(new AtomicInteger()), maxWeight);
+
+		for (int i = 0; i < 1000; i++) {
+			provider.getBytes("class" + i);
+		}
+
+		CachingClassProvider.Stats stats = provider.getStats();
+		assertThat(stats.weight(), is(lessThanOrEqualTo(maxWeight)));
+		assertThat(stats.evictionCount(), is(1000L - stats.size()));
+	}
+}
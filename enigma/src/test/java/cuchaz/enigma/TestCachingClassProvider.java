@@ -0,0 +1,71 @@
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.ClassProvider;
+
+public class TestCachingClassProvider {
+	private static final ClassProvider PROVIDER = new ClassProvider() {
+		@Override
+		public Collection<String> getClassNames() {
+			return List.of();
+		}
+
+		@Override
+		@Nullable
+		public ClassNode get(String name) {
+			ClassNode node = new ClassNode();
+			node.name = name;
+			return node;
+		}
+	};
+
+	@Test
+	public void cachesClasses() {
+		CachingClassProvider provider = new CachingClassProvider(PROVIDER);
+		ClassNode node = provider.get("a");
+
+		assertThat(provider.get("a"), is(sameInstance(node)));
+		assertThat(provider.getStats().hitCount(), is(1L));
+		assertThat(provider.getStats().missCount(), is(1L));
+		assertThat(provider.getStats().evictionCount(), is(0L));
+	}
+
+	@Test
+	public void staysWithinBound() {
+		long maxWeight = 16 * 4096;
+		CachingClassProvider provider = new CachingClassProvider(PROVIDER, maxWeight);
+
+		for (int i = 0; i < 10000; i++) {
+			provider.get("class" + i);
+		}
+
+		CachingClassProvider.Stats stats = provider.getStats();
+		assertThat(stats.weight(), is(lessThanOrEqualTo(maxWeight)));
+		assertThat(stats.evictionCount(), is(10000L - stats.size()));
+	}
+
+	@Test
+	public void keepsFrequentlyUsedClasses() {
+		CachingClassProvider provider = new CachingClassProvider(PROVIDER, 16 * 4096);
+		ClassNode frequent = provider.get("frequent");
+		provider.get("frequent");
+
+		for (int i = 0; i < 10000; i++) {
+			provider.get("class" + i);
+		}
+
+		assertThat(provider.get("frequent"), is(sameInstance(frequent)));
+	}
+}
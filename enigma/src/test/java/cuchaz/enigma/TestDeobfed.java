@@ -14,11 +14,20 @@ package cuchaz.enigma;
 import static cuchaz.enigma.TestEntryFactory.newClass;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -26,10 +35,12 @@ import org.junit.Test;
 import cuchaz.enigma.source.Decompiler;
 import cuchaz.enigma.source.Decompilers;
 import cuchaz.enigma.source.SourceSettings;
+import cuchaz.enigma.utils.Utils;
 
 public class TestDeobfed {
 	public static final Path OBF = Paths.get("build/test-obf/translation.jar");
 	public static final Path DEOBF = Paths.get("build/test-deobf/translation.jar");
+	private static EnigmaProject obfProject;
 	private static EnigmaProject deobfProject;
 
 	@BeforeClass
@@ -37,7 +48,7 @@ public class TestDeobfed {
 		Enigma enigma = Enigma.create();
 
 		Files.createDirectories(DEOBF.getParent());
-		EnigmaProject obfProject = enigma.openJar(OBF, List.of(), ProgressListener.none());
+		obfProject = enigma.openJar(OBF, List.of(), ProgressListener.none());
 		obfProject.exportRemappedJar(ProgressListener.none()).write(DEOBF, ProgressListener.none());
 
 		deobfProject = enigma.openJar(DEOBF, List.of(), ProgressListener.none());
@@ -77,4 +88,73 @@ public class TestDeobfed {
 		decompiler.getSource("i$a");
 		decompiler.getSource("i$b");
 	}
+
+	@Test
+	public void exportRemappedJarStreamed() throws Exception {
+		Path jar = Files.createTempFile("enigma-export", ".jar");
+
+		try {
+			obfProject.exportRemappedJar(jar, Deflater.BEST_SPEED, ProgressListener.none());
+
+			// the streamed export writes the same classes as the export kept in memory
+			assertThat(readJar(jar), is(readJar(DEOBF)));
+		} finally {
+			Files.deleteIfExists(jar);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void exportRemappedJarInvalidCompressionLevel() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-export");
+		Path jar = directory.resolve("export.jar");
+
+		try {
+			obfProject.exportRemappedJar(jar, 10, ProgressListener.none());
+		} finally {
+			// the level is checked before the jar is created
+			assertThat(Files.exists(jar), is(false));
+			Utils.delete(directory);
+		}
+	}
+
+	@Test
+	public void decompileTo() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-decompile");
+
+		try {
+			Path exported = directory.resolve("exported");
+			Path streamed = directory.resolve("streamed");
+			obfProject.exportRemappedJar(ProgressListener.none()).decompile(obfProject, ProgressListener.none(), Decompilers.CFR, EnigmaProject.DecompileErrorStrategy.PROPAGATE).write(exported, ProgressListener.none());
+			obfProject.decompileTo(streamed, ProgressListener.none(), Decompilers.CFR, EnigmaProject.DecompileErrorStrategy.PROPAGATE);
+
+			// classes translated on demand decompile to the same sources as the classes translated up front
+			assertThat(readFiles(streamed), is(readFiles(exported)));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	private static Map<String, String> readJar(Path jar) throws IOException {
+		Map<String, String> classes = new HashMap<>();
+
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			for (ZipEntry entry : zip.stream().toList()) {
+				classes.put(entry.getName(), HexFormat.of().formatHex(zip.getInputStream(entry).readAllBytes()));
+			}
+		}
+
+		return classes;
+	}
+
+	private static Map<String, String> readFiles(Path directory) throws IOException {
+		Map<String, String> files = new HashMap<>();
+
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.filter(Files::isRegularFile).toList()) {
+				files.put(directory.relativize(path).toString(), Files.readString(path));
+			}
+		}
+
+		return files;
+	}
 }
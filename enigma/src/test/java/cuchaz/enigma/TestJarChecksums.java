@@ -0,0 +1,81 @@
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+import cuchaz.enigma.utils.JarChecksums;
+import cuchaz.enigma.utils.Utils;
+
+public class TestJarChecksums {
+	@Test
+	public void ignoresEntryOrderAndResources() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-checksums");
+
+		try {
+			Path jar = writeJar(directory.resolve("a.jar"), "a.class", "A", "b.class", "B");
+			Path reordered = writeJar(directory.resolve("b.jar"), "b.class", "B", "readme.txt", "text", "a.class", "A");
+			Path changed = writeJar(directory.resolve("c.jar"), "a.class", "A", "b.class", "C");
+
+			for (JarChecksums.Mode mode : JarChecksums.Mode.values()) {
+				JarChecksums checksums = new JarChecksums(mode, null);
+				assertThat(checksums.compute(List.of(reordered)), is(checksums.compute(List.of(jar))));
+				assertThat(checksums.compute(List.of(changed)), is(not(checksums.compute(List.of(jar)))));
+				assertThat(checksums.compute(List.of(jar, changed)), is(not(checksums.compute(List.of(changed, jar)))));
+			}
+
+			assertThat(new JarChecksums(JarChecksums.Mode.CONTENT, null).compute(List.of(jar)), is(Utils.zipSha1(jar)));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	@Test
+	public void cachesByPathSizeAndModificationTime() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-checksums");
+
+		try {
+			Path cacheFile = directory.resolve("checksums.txt");
+			Path jar = writeJar(directory.resolve("a.jar"), "a.class", "A");
+			byte[] checksum = new JarChecksums(JarChecksums.Mode.CENTRAL_DIRECTORY, cacheFile).compute(List.of(jar));
+			FileTime lastModified = Files.getLastModifiedTime(jar);
+
+			// a jar with the same size and modification time is assumed to be unchanged
+			writeJar(jar, "a.class", "B");
+			Files.setLastModifiedTime(jar, lastModified);
+			assertThat(new JarChecksums(JarChecksums.Mode.CENTRAL_DIRECTORY, cacheFile).compute(List.of(jar)), is(checksum));
+
+			Files.setLastModifiedTime(jar, FileTime.fromMillis(lastModified.toMillis() + 2000));
+			assertThat(new JarChecksums(JarChecksums.Mode.CENTRAL_DIRECTORY, cacheFile).compute(List.of(jar)), is(not(checksum)));
+
+			// only the checksum of the latest version of the jar is kept
+			assertThat(Files.readAllLines(cacheFile).size(), is(1));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	private static Path writeJar(Path path, String... namesAndContents) throws IOException {
+		try (OutputStream out = Files.newOutputStream(path); ZipOutputStream zip = new ZipOutputStream(out)) {
+			for (int i = 0; i < namesAndContents.length; i += 2) {
+				zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+				zip.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+				zip.closeEntry();
+			}
+		}
+
+		return path;
+	}
+}
@@ -0,0 +1,170 @@
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import cuchaz.enigma.analysis.index.ClassIndexRecords;
+import cuchaz.enigma.analysis.index.EntryIndex;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.analysis.index.JarIndexCache;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.utils.Utils;
+
+public class TestJarIndexCache {
+	public static final Path JAR = Paths.get("build/test-obf/translation.jar");
+
+	@Test
+	public void roundTrip() throws Exception {
+		JarClassProvider jcp = new JarClassProvider(JAR);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+
+		Path directory = Files.createTempDirectory("enigma-index-cache");
+
+		try {
+			JarIndexCache cache = new JarIndexCache(directory);
+			byte[] key = JarIndexCache.computeKey(Utils.zipSha1(JAR), JarIndexCache.computeLibrariesKey(null));
+			assertThat(cache.load(key), is(nullValue()));
+
+			cache.save(key, index);
+			JarIndex loaded = cache.load(key);
+			assertThat(loaded, is(notNullValue()));
+
+			assertSameIndex(loaded, index);
+
+			assertThat(cache.load(JarIndexCache.computeKey(new byte[20], JarIndexCache.computeLibrariesKey(null))), is(nullValue()));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	@Test
+	public void incrementalReindex() throws Exception {
+		JarClassProvider jcp = new JarClassProvider(JAR);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+
+		Path directory = Files.createTempDirectory("enigma-index-cache");
+
+		try {
+			JarIndexCache cache = new JarIndexCache(directory);
+			byte[] librariesKey = JarIndexCache.computeLibrariesKey(null);
+			Map<String, byte[]> classHashes = Utils.zipClassChecksums(JAR);
+
+			ClassIndexRecords records = cache.loadRecords(List.of(JAR), librariesKey, classHashes);
+			assertThat(records.getUnchangedCount(), is(0));
+
+			JarIndex recorded = JarIndex.empty();
+			recorded.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), records, ProgressListener.none());
+			assertSameIndex(recorded, index);
+			cache.saveRecords(List.of(JAR), librariesKey, records);
+
+			String changedClass = jcp.getClassNames().iterator().next();
+			Map<String, byte[]> changedHashes = new HashMap<>(classHashes);
+			changedHashes.put(changedClass, new byte[20]);
+
+			ClassIndexRecords loadedRecords = cache.loadRecords(List.of(JAR), librariesKey, changedHashes);
+			assertThat(loadedRecords.isUnchanged(changedClass), is(false));
+			assertThat(loadedRecords.getUnchangedCount() > 0, is(true));
+
+			JarIndex replayed = JarIndex.empty();
+			replayed.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), loadedRecords, ProgressListener.none());
+			assertSameIndex(replayed, index);
+
+			assertThat(cache.loadRecords(List.of(JAR), new byte[20], classHashes).getUnchangedCount(), is(0));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() throws Exception {
+		JarClassProvider jcp = new JarClassProvider(JAR);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+
+		Path directory = Files.createTempDirectory("enigma-index-cache");
+
+		try {
+			byte[] librariesKey = JarIndexCache.computeLibrariesKey(null);
+			byte[] first = JarIndexCache.computeKey(new byte[] {1}, librariesKey);
+			byte[] second = JarIndexCache.computeKey(new byte[] {2}, librariesKey);
+			byte[] third = JarIndexCache.computeKey(new byte[] {3}, librariesKey);
+
+			new JarIndexCache(directory).save(first, index);
+			long fileSize;
+
+			try (Stream<Path> files = Files.list(directory)) {
+				fileSize = files.findFirst().orElseThrow().toFile().length();
+			}
+
+			// room for two indexes
+			JarIndexCache cache = new JarIndexCache(directory, fileSize * 2);
+			cache.save(second, index);
+			setAllModified(directory, 1000);
+
+			// loading the first index makes the second one the least recently used
+			assertThat(cache.load(first), is(notNullValue()));
+			cache.save(third, index);
+
+			assertThat(cache.load(first), is(notNullValue()));
+			assertThat(cache.load(second), is(nullValue()));
+			assertThat(cache.load(third), is(notNullValue()));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	private static void setAllModified(Path directory, long millis) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.toList()) {
+				Files.setLastModifiedTime(file, FileTime.fromMillis(millis));
+			}
+		}
+	}
+
+	private static void assertSameIndex(JarIndex actual, JarIndex expected) {
+		EntryIndex entries = expected.getEntryIndex();
+		EntryIndex actualEntries = actual.getEntryIndex();
+		assertThat(actualEntries.getClasses(), containsInAnyOrder(entries.getClasses().toArray()));
+		assertThat(actualEntries.getMethods(), containsInAnyOrder(entries.getMethods().toArray()));
+		assertThat(actualEntries.getFields(), containsInAnyOrder(entries.getFields().toArray()));
+
+		for (ClassEntry classEntry : entries.getClasses()) {
+			assertThat(actual.isIndexed(classEntry.getFullName()), is(expected.isIndexed(classEntry.getFullName())));
+			assertThat(actualEntries.getClassAccess(classEntry).getFlags(), is(entries.getClassAccess(classEntry).getFlags()));
+			assertThat(actual.getInheritanceIndex().getAncestors(classEntry), is(expected.getInheritanceIndex().getAncestors(classEntry)));
+			assertThat(actual.getReferenceIndex().getReferencesToClass(classEntry), containsInAnyOrder(expected.getReferenceIndex().getReferencesToClass(classEntry).toArray()));
+			assertThat(actual.getPackageVisibilityIndex().getPartition(classEntry), is(expected.getPackageVisibilityIndex().getPartition(classEntry)));
+		}
+
+		for (MethodEntry methodEntry : entries.getMethods()) {
+			assertThat(actual.getReferenceIndex().getReferencesToMethod(methodEntry), containsInAnyOrder(expected.getReferenceIndex().getReferencesToMethod(methodEntry).toArray()));
+			assertThat(actual.getBridgeMethodIndex().getBridgeFromSpecialized(methodEntry), is(expected.getBridgeMethodIndex().getBridgeFromSpecialized(methodEntry)));
+			assertThat(actual.getMethodEquivalenceIndex().getEquivalentMethods(methodEntry), is(expected.getMethodEquivalenceIndex().getEquivalentMethods(methodEntry)));
+		}
+
+		for (FieldEntry fieldEntry : entries.getFields()) {
+			assertThat(actual.getReferenceIndex().getReferencesToField(fieldEntry), containsInAnyOrder(expected.getReferenceIndex().getReferencesToField(fieldEntry).toArray()));
+		}
+	}
+}
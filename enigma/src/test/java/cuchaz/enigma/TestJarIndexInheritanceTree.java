@@ -37,9 +37,13 @@ import cuchaz.enigma.classprovider.CachingClassProvider;
 import cuchaz.enigma.classprovider.JarClassProvider;
 import cuchaz.enigma.translation.mapping.EntryResolver;
 import cuchaz.enigma.translation.mapping.IndexEntryResolver;
+import cuchaz.enigma.translation.mapping.ResolutionStrategy;
 import cuchaz.enigma.translation.representation.AccessFlags;
+import cuchaz.enigma.translation.representation.MethodDescriptor;
+import cuchaz.enigma.translation.representation.Signature;
 import cuchaz.enigma.translation.representation.entry.ClassEntry;
 import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
 import cuchaz.enigma.translation.representation.entry.MethodDefEntry;
 import cuchaz.enigma.translation.representation.entry.MethodEntry;
 
@@ -120,6 +124,27 @@ public class TestJarIndexInheritanceTree {
 		assertThat(entries, containsInAnyOrder(newMethod(subClassB, "b", "()V")));
 	}
 
+	@Test
+	public void memoizedResolutionKeepsCallerEntry() {
+		EntryResolver resolver = index.getEntryResolver();
+		MethodEntry getName = newMethod(subClassAA, "a", "()Ljava/lang/String;");
+		MethodEntry baseGetName = newMethod(baseClass, "a", "()Ljava/lang/String;");
+		MethodDefEntry getNameDef = new MethodDefEntry(subClassAA, "a", new MethodDescriptor("()Ljava/lang/String;"), Signature.createSignature(null), new AccessFlags(Opcodes.ACC_PUBLIC));
+
+		// equal entries of another type or name resolve to entries built from themselves
+		assertThat(resolver.resolveFirstEntry(getName, ResolutionStrategy.RESOLVE_ROOT), is(baseGetName));
+		assertThat(resolver.resolveFirstEntry(getNameDef, ResolutionStrategy.RESOLVE_ROOT) instanceof MethodDefEntry, is(true));
+
+		LocalVariableEntry first = new LocalVariableEntry(getName, 1, "first", false, null);
+		LocalVariableEntry second = new LocalVariableEntry(getName, 1, "second", true, null);
+		assertThat(resolver.resolveFirstEntry(first, ResolutionStrategy.RESOLVE_ROOT).getName(), is("first"));
+
+		LocalVariableEntry resolvedSecond = resolver.resolveFirstEntry(second, ResolutionStrategy.RESOLVE_ROOT);
+		assertThat(resolvedSecond.getName(), is("second"));
+		assertThat(resolvedSecond.isArgument(), is(true));
+		assertThat(resolvedSecond.getParent(), is(baseGetName));
+	}
+
 	@Test
 	@SuppressWarnings("unchecked")
 	public void fieldReferences() {
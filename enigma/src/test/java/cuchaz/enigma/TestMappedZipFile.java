@@ -0,0 +1,46 @@
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+import cuchaz.enigma.utils.MappedZipFile;
+
+public class TestMappedZipFile {
+	public static final Path JAR = Paths.get("build/test-obf/translation.jar");
+
+	@Test
+	public void readsSameContentsAsZipFile() throws Exception {
+		assertSameContents(true);
+	}
+
+	@Test
+	public void readsSameContentsWithoutMapping() throws Exception {
+		assertSameContents(false);
+	}
+
+	private static void assertSameContents(boolean map) throws Exception {
+		try (ZipFile zipFile = new ZipFile(JAR.toFile()); MappedZipFile mappedZipFile = new MappedZipFile(JAR, map)) {
+			assertThat(mappedZipFile.getEntries().size(), is(zipFile.size()));
+
+			for (ZipEntry entry : Collections.list(zipFile.entries())) {
+				try (InputStream in = zipFile.getInputStream(entry)) {
+					assertThat(mappedZipFile.read(entry.getName()), is(in.readAllBytes()));
+				}
+
+				assertThat(mappedZipFile.getEntry(entry.getName()).crc(), is((int) entry.getCrc()));
+			}
+
+			assertThat(mappedZipFile.read("does/not/Exist.class"), is(nullValue()));
+		}
+	}
+}
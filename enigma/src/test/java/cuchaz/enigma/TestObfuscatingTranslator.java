@@ -0,0 +1,106 @@
+package cuchaz.enigma;
+
+import static cuchaz.enigma.TestEntryFactory.newClass;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.ObfuscatingTranslator;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.FieldEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+
+public class TestObfuscatingTranslator {
+	public static final Path JAR = Paths.get("build/test-obf/innerClasses.jar");
+
+	private static final ClassEntry CLASS_TREE_ROOT = newClass("f");
+	private static final ClassEntry CLASS_TREE_LEVEL_1 = newClass("f$a");
+	private static final ClassEntry CLASS_TREE_LEVEL_3 = newClass("f$a$a$a");
+
+	private JarIndex index;
+	private EntryRemapper remapper;
+	private ObfuscatingTranslator obfuscator;
+
+	@Before
+	public void setUp() throws Exception {
+		JarClassProvider jcp = new JarClassProvider(JAR);
+		index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+		remapper = EntryRemapper.empty(index);
+		obfuscator = new ObfuscatingTranslator(index);
+		obfuscator.refreshAll(remapper.getDeobfuscator());
+	}
+
+	@Test
+	public void renamedOuterClass() {
+		FieldEntry field = getField(CLASS_TREE_LEVEL_1);
+		rename(CLASS_TREE_LEVEL_1, "Branch");
+		rename(CLASS_TREE_ROOT, "ClassTree");
+
+		// the inner classes are renamed along with their outer class
+		assertThat(remapper.deobfuscate(CLASS_TREE_LEVEL_1), is(newClass("ClassTree$Branch")));
+		assertThat(obfuscator.translate(remapper.deobfuscate(CLASS_TREE_LEVEL_1)), is(CLASS_TREE_LEVEL_1));
+		assertThat(obfuscator.translate(remapper.deobfuscate(CLASS_TREE_LEVEL_3)), is(CLASS_TREE_LEVEL_3));
+		assertThat(obfuscator.translate(remapper.deobfuscate(field)), is(field));
+
+		rename(field, "level1Field");
+		assertThat(remapper.deobfuscate(field).getName(), is("level1Field"));
+		assertThat(obfuscator.translate(remapper.deobfuscate(field)), is(field));
+
+		rename(CLASS_TREE_ROOT, "Tree");
+		assertThat(obfuscator.translate(remapper.deobfuscate(CLASS_TREE_LEVEL_3)), is(CLASS_TREE_LEVEL_3));
+		assertThat(obfuscator.translate(remapper.deobfuscate(field)), is(field));
+	}
+
+	@Test
+	public void refreshAllMatchesSerialBuild() {
+		rename(CLASS_TREE_ROOT, "ClassTree");
+		rename(CLASS_TREE_LEVEL_1, "Branch");
+		rename(getField(CLASS_TREE_LEVEL_1), "level1Field");
+
+		// the serial build inverted every entry of the jar, so the parallel one must obfuscate each back to itself,
+		// and agree with the inverse mappings updated one rename at a time
+		ObfuscatingTranslator rebuilt = new ObfuscatingTranslator(index);
+		rebuilt.refreshAll(remapper.getDeobfuscator());
+
+		for (ClassEntry clazz : index.getEntryIndex().getClasses()) {
+			assertRoundTrip(rebuilt, clazz);
+		}
+
+		for (FieldEntry field : index.getEntryIndex().getFields()) {
+			assertRoundTrip(rebuilt, field);
+		}
+
+		for (MethodEntry method : index.getEntryIndex().getMethods()) {
+			assertRoundTrip(rebuilt, method);
+		}
+	}
+
+	private void assertRoundTrip(ObfuscatingTranslator rebuilt, Entry<?> entry) {
+		Entry<?> deobfEntry = remapper.deobfuscate(entry);
+		assertThat(rebuilt.translate(deobfEntry), is(entry));
+		assertThat(obfuscator.translate(deobfEntry), is(entry));
+	}
+
+	private FieldEntry getField(ClassEntry owner) {
+		return index.getEntryIndex().getFields().stream().filter(field -> field.getParent().equals(owner)).findFirst().orElseThrow();
+	}
+
+	private void rename(Entry<?> entry, String name) {
+		String oldName = Objects.requireNonNullElse(remapper.getDeobfMapping(entry).targetName(), entry.getName());
+		remapper.getObfToDeobf().insert(entry, new EntryMapping(name));
+		obfuscator.refreshName(entry, oldName, name);
+	}
+}
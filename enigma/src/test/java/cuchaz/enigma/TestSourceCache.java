@@ -0,0 +1,233 @@
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import cuchaz.enigma.analysis.EntryReference;
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.ClassProvider;
+import cuchaz.enigma.source.Decompiler;
+import cuchaz.enigma.source.DecompilerService;
+import cuchaz.enigma.source.Source;
+import cuchaz.enigma.source.SourceCache;
+import cuchaz.enigma.source.SourceIndex;
+import cuchaz.enigma.source.SourceSettings;
+import cuchaz.enigma.source.Token;
+import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.representation.MethodDescriptor;
+import cuchaz.enigma.translation.representation.TypeDescriptor;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.Entry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableDefEntry;
+import cuchaz.enigma.translation.representation.entry.LocalVariableEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+import cuchaz.enigma.utils.Utils;
+
+public class TestSourceCache {
+	private static final String SOURCE = "class a {\n\tvoid b(int c) {\n\t\tc++;\n\t}\n}\n";
+	private static final ClassEntry CLASS = new ClassEntry("a");
+	private static final MethodEntry METHOD = new MethodEntry(CLASS, "b", new MethodDescriptor("(I)V"));
+	private static final LocalVariableEntry PARAMETER = new LocalVariableEntry(METHOD, 1, "c", true, null);
+	private static final String SLOT_SHARING_SOURCE = "class a {\n\tvoid b() {\n\t\t{ int d = 0; d++; }\n\t\t{ String e = null; e.length(); }\n\t}\n}\n";
+	private static final MethodEntry SLOT_SHARING_METHOD = new MethodEntry(CLASS, "b", new MethodDescriptor("()V"));
+	private static final LocalVariableDefEntry INT_LOCAL = new LocalVariableDefEntry(SLOT_SHARING_METHOD, 1, "d", false, new TypeDescriptor("I"), null);
+	private static final LocalVariableDefEntry STRING_LOCAL = new LocalVariableDefEntry(SLOT_SHARING_METHOD, 1, "e", false, new TypeDescriptor("Ljava/lang/String;"), null);
+
+	@Test
+	public void reusesSourcesAcrossSessions() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-source-cache");
+
+		try {
+			AtomicInteger decompiles = new AtomicInteger();
+			SourceIndex first = decompile(new SourceCache(directory), Opcodes.ACC_PUBLIC, decompiles);
+			SourceIndex second = decompile(new SourceCache(directory), Opcodes.ACC_PUBLIC, decompiles);
+
+			assertThat(decompiles.get(), is(1));
+			assertThat(second, is(not(sameInstance(first))));
+			assertThat(second.getSource(), is(first.getSource()));
+
+			Token declaration = first.getDeclarationToken(METHOD);
+			assertThat(second.getDeclarationToken(METHOD), is(declaration));
+			assertThat(second.getDeclaration(declaration), is(METHOD));
+
+			Token reference = second.getReferenceToken(SOURCE.indexOf("c++"));
+			assertThat(second.getReference(reference), is(first.getReference(reference)));
+			assertThat(second.getReferenceTokens(new EntryReference<>(PARAMETER, "c", METHOD)), is(first.getReferenceTokens(new EntryReference<>(PARAMETER, "c", METHOD))));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	@Test
+	public void decompilesChangedClasses() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-source-cache");
+
+		try {
+			AtomicInteger decompiles = new AtomicInteger();
+			decompile(new SourceCache(directory), Opcodes.ACC_PUBLIC, decompiles);
+			decompile(new SourceCache(directory), Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, decompiles);
+
+			assertThat(decompiles.get(), is(2));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-source-cache");
+
+		try {
+			int first = Opcodes.ACC_PUBLIC;
+			int second = Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL;
+			int third = Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT;
+			AtomicInteger decompiles = new AtomicInteger();
+			decompile(new SourceCache(directory), first, decompiles);
+			long fileSize;
+
+			try (Stream<Path> files = Files.walk(directory)) {
+				fileSize = files.filter(Files::isRegularFile).findFirst().orElseThrow().toFile().length();
+			}
+
+			// room for two sources
+			SourceCache cache = new SourceCache(directory, fileSize * 2);
+			decompile(cache, second, decompiles);
+
+			try (Stream<Path> files = Files.walk(directory)) {
+				for (Path file : files.filter(Files::isRegularFile).toList()) {
+					Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+				}
+			}
+
+			// loading the first source makes the second one the least recently used
+			decompile(cache, first, decompiles);
+			decompile(cache, third, decompiles);
+			assertThat(decompiles.get(), is(3));
+
+			decompile(cache, first, decompiles);
+			decompile(cache, third, decompiles);
+			assertThat(decompiles.get(), is(3));
+			decompile(cache, second, decompiles);
+			assertThat(decompiles.get(), is(4));
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	@Test
+	public void keepsLocalsSharingASlot() throws Exception {
+		Path directory = Files.createTempDirectory("enigma-source-cache");
+
+		try {
+			AtomicInteger decompiles = new AtomicInteger();
+			SourceIndex first = decompile(new SourceCache(directory), Opcodes.ACC_PUBLIC, new TestSource(SLOT_SHARING_SOURCE, decompiles));
+			SourceIndex second = decompile(new SourceCache(directory), Opcodes.ACC_PUBLIC, new TestSource(SLOT_SHARING_SOURCE, decompiles));
+
+			assertThat(decompiles.get(), is(1));
+
+			for (String name : List.of("d++", "e.length")) {
+				Token token = second.getReferenceToken(SLOT_SHARING_SOURCE.indexOf(name));
+				LocalVariableDefEntry expected = (LocalVariableDefEntry) first.getReference(token).entry;
+				LocalVariableDefEntry local = (LocalVariableDefEntry) second.getReference(token).entry;
+				assertThat(local.getName(), is(expected.getName()));
+				assertThat(local.getDesc(), is(expected.getDesc()));
+			}
+		} finally {
+			Utils.delete(directory);
+		}
+	}
+
+	private static SourceIndex decompile(SourceCache cache, int access, AtomicInteger decompiles) {
+		return decompile(cache, access, new TestSource(SOURCE, decompiles));
+	}
+
+	private static SourceIndex decompile(SourceCache cache, int access, TestSource source) {
+		ClassProvider classProvider = new ClassProvider() {
+			@Override
+			public Collection<String> getClassNames() {
+				return List.of(CLASS.getFullName());
+			}
+
+			@Override
+			@Nullable
+			public ClassNode get(String name) {
+				ClassNode node = new ClassNode();
+				node.version = Opcodes.V1_8;
+				node.access = access;
+				node.name = name;
+				node.superName = "java/lang/Object";
+				return node;
+			}
+		};
+
+		DecompilerService service = new DecompilerService() {
+			@Override
+			public Decompiler create(ClassProvider classProvider, SourceSettings settings) {
+				return (className, remapper) -> source;
+			}
+
+			@Override
+			public String getId() {
+				return "test";
+			}
+		};
+
+		SourceSettings settings = new SourceSettings(true, true);
+		Decompiler decompiler = cache.wrap(service.create(classProvider, settings), service, settings, classProvider, JarIndex.empty());
+		return decompiler.getSource(CLASS.getFullName(), null).index();
+	}
+
+	private record TestSource(String source, AtomicInteger decompiles) implements Source {
+		@Override
+		public String asString() {
+			return source;
+		}
+
+		@Override
+		public Source withJavadocs(EntryRemapper remapper) {
+			return this;
+		}
+
+		@Override
+		public SourceIndex index() {
+			decompiles.incrementAndGet();
+
+			if (source.equals(SLOT_SHARING_SOURCE)) {
+				SourceIndex index = new SourceIndex(source);
+				index.addDeclaration(token(source, "d"), INT_LOCAL);
+				index.addDeclaration(token(source, "e"), STRING_LOCAL);
+				index.addReference(new Token(source.indexOf("d++"), source.indexOf("d++") + 1, "d"), INT_LOCAL, SLOT_SHARING_METHOD);
+				index.addReference(new Token(source.indexOf("e.length"), source.indexOf("e.length") + 1, "e"), STRING_LOCAL, SLOT_SHARING_METHOD);
+				return index;
+			}
+
+			SourceIndex index = new SourceIndex(source);
+			index.addDeclaration(token(source, "a"), CLASS);
+			index.addDeclaration(token(source, "b"), METHOD);
+			index.addDeclaration(token(source, "c"), PARAMETER);
+			int position = SOURCE.indexOf("c++");
+			index.addReference(new Token(position, position + 1, "c"), (Entry<?>) PARAMETER, METHOD);
+			return index;
+		}
+
+		private static Token token(String source, String name) {
+			int position = source.indexOf(" " + name) + 1;
+			return new Token(position, position + name.length(), name);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package cuchaz.enigma;
+
+import static cuchaz.enigma.TestEntryFactory.newClass;
+import static cuchaz.enigma.TestEntryFactory.newField;
+import static cuchaz.enigma.TestEntryFactory.newMethod;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import cuchaz.enigma.analysis.index.JarIndex;
+import cuchaz.enigma.classprovider.CachingClassProvider;
+import cuchaz.enigma.classprovider.JarClassProvider;
+import cuchaz.enigma.translation.TranslationCache;
+import cuchaz.enigma.translation.mapping.EntryMapping;
+import cuchaz.enigma.translation.mapping.EntryRemapper;
+import cuchaz.enigma.translation.representation.MethodDescriptor;
+import cuchaz.enigma.translation.representation.entry.ClassEntry;
+import cuchaz.enigma.translation.representation.entry.MethodEntry;
+
+public class TestTranslationCache {
+	public static final Path JAR = Paths.get("build/test-obf/inheritanceTree.jar");
+
+	private final ClassEntry baseClass = newClass("a");
+	private final ClassEntry subClassAA = newClass("d");
+	private final ClassEntry subClassB = newClass("c");
+
+	private EntryRemapper remapper;
+
+	@Before
+	public void setUp() throws Exception {
+		JarClassProvider jcp = new JarClassProvider(JAR);
+		JarIndex index = JarIndex.empty();
+		index.indexJar(jcp.getClassNames(), new CachingClassProvider(jcp), ProgressListener.none());
+		remapper = EntryRemapper.empty(index);
+	}
+
+	@Test
+	public void repeatedTranslations() {
+		MethodEntry doBThings = newMethod(subClassB, "b", "()V");
+		remapper.deobfuscate(doBThings);
+		long hits = remapper.getDeobfuscationCacheStats().hitCount();
+
+		assertThat(remapper.deobfuscate(doBThings), is(doBThings));
+		assertThat(remapper.getDeobfuscationCacheStats().hitCount(), is(hits + 1));
+	}
+
+	@Test
+	public void renamedRoot() {
+		MethodEntry getName = newMethod(subClassAA, "a", "()Ljava/lang/String;");
+		assertThat(remapper.deobfuscate(getName).getName(), is("a"));
+
+		remapper.getObfToDeobf().insert(newMethod(baseClass, "a", "()Ljava/lang/String;"), new EntryMapping("getName"));
+		assertThat(remapper.deobfuscate(getName).getName(), is("getName"));
+
+		remapper.getObfToDeobf().remove(newMethod(baseClass, "a", "()Ljava/lang/String;"));
+		assertThat(remapper.deobfuscate(getName).getName(), is("a"));
+	}
+
+	@Test
+	public void renamedClass() {
+		MethodDescriptor descriptor = new MethodDescriptor("(La;)Lc;");
+		assertThat(remapper.deobfuscate(descriptor), is(descriptor));
+
+		remapper.getObfToDeobf().insert(baseClass, new EntryMapping("BaseClass"));
+		assertThat(remapper.deobfuscate(descriptor), is(new MethodDescriptor("(LBaseClass;)Lc;")));
+	}
+
+	@Test
+	public void unrelatedChanges() {
+		MethodEntry doBThings = newMethod(subClassB, "b", "()V");
+		remapper.deobfuscate(doBThings);
+
+		remapper.getObfToDeobf().insert(newMethod(subClassAA, "a", "()V"), new EntryMapping("doBaseThings"));
+		TranslationCache.Stats stats = remapper.getDeobfuscationCacheStats();
+
+		assertThat(remapper.deobfuscate(doBThings), is(doBThings));
+		assertThat(remapper.getDeobfuscationCacheStats().hitCount(), is(stats.hitCount() + 1));
+		assertThat(remapper.getDeobfuscationCacheStats().invalidationCount(), is(stats.invalidationCount()));
+	}
+}
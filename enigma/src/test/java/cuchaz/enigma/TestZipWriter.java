@@ -0,0 +1,80 @@
+package cuchaz.enigma;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+import cuchaz.enigma.utils.MappedZipFile;
+import cuchaz.enigma.utils.ZipWriter;
+
+public class TestZipWriter {
+	@Test
+	public void readableByZipFileAndMappedZipFile() throws Exception {
+		Path path = Files.createTempFile("enigma-zip", ".jar");
+
+		try {
+			byte[] deflated = "deflated ".repeat(100).getBytes(StandardCharsets.UTF_8);
+			byte[] stored = "stored".getBytes(StandardCharsets.UTF_8);
+
+			try (ZipWriter out = new ZipWriter(Files.newOutputStream(path))) {
+				out.write(ZipWriter.compress("a/Deflated.class", deflated, Deflater.BEST_COMPRESSION));
+				out.write(ZipWriter.compress("b/Stored.class", stored, Deflater.NO_COMPRESSION));
+			}
+
+			try (ZipFile zip = new ZipFile(path.toFile())) {
+				assertThat(zip.size(), is(2));
+				assertThat(zip.getEntry("a/Deflated.class").getMethod(), is(ZipEntry.DEFLATED));
+				assertThat(zip.getEntry("b/Stored.class").getMethod(), is(ZipEntry.STORED));
+
+				try (InputStream in = zip.getInputStream(zip.getEntry("a/Deflated.class"))) {
+					assertThat(in.readAllBytes(), is(deflated));
+				}
+
+				try (InputStream in = zip.getInputStream(zip.getEntry("b/Stored.class"))) {
+					assertThat(in.readAllBytes(), is(stored));
+				}
+			}
+
+			try (MappedZipFile zip = new MappedZipFile(path)) {
+				assertThat(zip.read("a/Deflated.class"), is(deflated));
+				assertThat(zip.read("b/Stored.class"), is(stored));
+			}
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void manyEntries() throws Exception {
+		Path path = Files.createTempFile("enigma-zip", ".jar");
+		int count = 0x10000 + 10;
+
+		try {
+			try (ZipWriter out = new ZipWriter(Files.newOutputStream(path))) {
+				for (int i = 0; i < count; i++) {
+					out.write(ZipWriter.compress("C" + i + ".class", new byte[] {(byte) i}, Deflater.NO_COMPRESSION));
+				}
+			}
+
+			try (ZipFile zip = new ZipFile(path.toFile())) {
+				assertThat(zip.size(), is(count));
+			}
+
+			try (MappedZipFile zip = new MappedZipFile(path)) {
+				assertThat(zip.getEntries().size(), is(count));
+				assertThat(zip.read("C" + (count - 1) + ".class"), is(new byte[] {(byte) (count - 1)}));
+			}
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+}